@@ -0,0 +1,105 @@
+package com.rjtmahinay.collateral.benchmark;
+
+import com.rjtmahinay.collateral.config.CollateralProperties;
+import com.rjtmahinay.collateral.dto.AllocationDto.AllocationRequest;
+import com.rjtmahinay.collateral.dto.AllocationDto.AllocationResult;
+import com.rjtmahinay.collateral.service.AvailableCollateralIndex;
+import com.rjtmahinay.collateral.service.CollateralAllocationService;
+import com.rjtmahinay.collateral.service.CollateralAllocator;
+import com.rjtmahinay.collateral.service.CollateralAllocator.Candidate;
+import com.rjtmahinay.collateral.service.CollateralAllocator.Plan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation for a customer with {@code assets} pledgeable collaterals and a loan needing about a third of their
+ * value: the greedy plan alone, the greedy plan refined by the bounded search, and the full preview through the
+ * service (index read, haircuts, search) against H2.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AllocationBenchmark {
+
+    private static final String SEED = "INSERT INTO collateral (collateral_id, customer_id, account_id, type, "
+            + "description, estimated_value, market_value, currency, status, location, evaluation_date, "
+            + "available_value, encumbered_value) "
+            + "SELECT 'COL-ALLOC-' || x, 'CUST-ALLOC', 'ACC-ALLOC', 'VEHICLE', 'Pool vehicle', "
+            + "1000.00 + MOD(x * 7919, 49000), 1000.00 + MOD(x * 7919, 49000), 'USD', 'AVAILABLE', 'CA', "
+            + "CURRENT_TIMESTAMP, 1000.00 + MOD(x * 7919, 49000), 0 FROM SYSTEM_RANGE(1, :assets)";
+
+    @Param({ "1000", "5000" })
+    public int assets;
+
+    private CollateralAllocator collateralAllocator;
+    private CollateralAllocationService collateralAllocationService;
+    private List<Candidate> candidates;
+    private long requiredCents;
+    private int searchBudget;
+    private AllocationRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp(ApplicationState application) {
+        collateralAllocator = application.getBean(CollateralAllocator.class);
+        collateralAllocationService = application.getBean(CollateralAllocationService.class);
+        searchBudget = application.getBean(CollateralProperties.class).getAllocation().getSearchBudget();
+
+        Random random = new Random(42);
+        candidates = new ArrayList<>(assets);
+        long totalCents = 0;
+        for (int i = 0; i < assets; i++) {
+            long lendingCents = 100_000 + random.nextInt(4_900_000);
+            candidates.add(new Candidate("COL-" + i, lendingCents, 1 + random.nextInt(2)));
+            totalCents += lendingCents;
+        }
+        requiredCents = totalCents / 3;
+
+        application.getBean(DatabaseClient.class).sql(SEED)
+                .bind("assets", assets)
+                .fetch()
+                .rowsUpdated()
+                .block();
+        // The seed bypasses the service, so let the consistency check pick it up
+        application.getBean(AvailableCollateralIndex.class).verify().block();
+        request = AllocationRequest.builder()
+                .customerId("CUST-ALLOC")
+                .loanId("LOAN-ALLOC")
+                .loanAmount(BigDecimal.valueOf(assets * 5_000L))
+                .build();
+    }
+
+    @Benchmark
+    public Plan greedy() {
+        return collateralAllocator.allocate(candidates, requiredCents, 0);
+    }
+
+    @Benchmark
+    public Plan boundedSearch() {
+        return collateralAllocator.allocate(candidates, requiredCents, searchBudget);
+    }
+
+    @Benchmark
+    public AllocationResult preview() {
+        return collateralAllocationService.previewAllocation(request).block();
+    }
+}
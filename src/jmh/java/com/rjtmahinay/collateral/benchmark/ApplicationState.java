@@ -0,0 +1,41 @@
+package com.rjtmahinay.collateral.benchmark;
+
+import com.rjtmahinay.collateral.CollateralServiceApplication;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Boots the application once per trial against the embedded H2 R2DBC pool, without the web server,
+ * so benchmarks measure the service and repository layers only.
+ */
+@State(Scope.Benchmark)
+public class ApplicationState {
+
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(CollateralServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "logging.level.root=WARN",
+                        "logging.level.com.rjtmahinay.collateral=WARN",
+                        "logging.level.org.springframework.r2dbc=WARN")
+                .run();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+}
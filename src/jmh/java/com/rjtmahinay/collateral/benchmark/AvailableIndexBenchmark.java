@@ -0,0 +1,82 @@
+package com.rjtmahinay.collateral.benchmark;
+
+import com.rjtmahinay.collateral.model.Collateral;
+import com.rjtmahinay.collateral.repository.CollateralRepository;
+import com.rjtmahinay.collateral.service.AvailableCollateralIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The loan origination available-collateral query for a random customer, answered by the in-memory index against
+ * the indexed range scan in H2. {@code customers} customers own 20 AVAILABLE collaterals each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AvailableIndexBenchmark {
+
+    private static final String SEED = "INSERT INTO collateral (collateral_id, customer_id, account_id, type, "
+            + "description, estimated_value, market_value, currency, status, location, evaluation_date, "
+            + "available_value, encumbered_value) "
+            + "SELECT 'COL-IDX-' || x, 'CUST-IDX-' || MOD(x, :customers), 'ACC-IDX', 'VEHICLE', 'Indexed vehicle', "
+            + "1000.00 * MOD(x, 97), 1000.00 * MOD(x, 97), 'USD', 'AVAILABLE', 'CA', CURRENT_TIMESTAMP, "
+            + "1000.00 * MOD(x, 97), 0 FROM SYSTEM_RANGE(1, :rows)";
+
+    private static final BigDecimal MIN_VALUE = BigDecimal.valueOf(50_000);
+
+    @Param({ "10000" })
+    public int customers;
+
+    private AvailableCollateralIndex availableCollateralIndex;
+    private CollateralRepository collateralRepository;
+
+    @Setup(Level.Trial)
+    public void setUp(ApplicationState application) {
+        availableCollateralIndex = application.getBean(AvailableCollateralIndex.class);
+        collateralRepository = application.getBean(CollateralRepository.class);
+
+        application.getBean(DatabaseClient.class).sql(SEED)
+                .bind("customers", customers)
+                .bind("rows", customers * 20)
+                .fetch()
+                .rowsUpdated()
+                .block();
+        // The seed bypasses the service, so let the consistency check pick it up
+        availableCollateralIndex.verify().block();
+    }
+
+    @Benchmark
+    public List<Collateral> indexed() {
+        return availableCollateralIndex.find(randomCustomer(), MIN_VALUE).collectList().block();
+    }
+
+    @Benchmark
+    public List<Collateral> database() {
+        return collateralRepository.findAvailableCollateralsByCustomerIdAndMinValue(randomCustomer(), MIN_VALUE)
+                .collectList()
+                .block();
+    }
+
+    private String randomCustomer() {
+        return "CUST-IDX-" + ThreadLocalRandom.current().nextInt(customers);
+    }
+}
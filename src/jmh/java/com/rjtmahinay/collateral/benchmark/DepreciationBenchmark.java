@@ -0,0 +1,70 @@
+package com.rjtmahinay.collateral.benchmark;
+
+import com.rjtmahinay.collateral.dto.AutoLoanDto.MonthlyDepreciation;
+import com.rjtmahinay.collateral.service.DepreciationForecaster;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-form {@link DepreciationForecaster} against the previous month-by-month loop, whose unrounded
+ * BigDecimal grows by the rate's digits every month.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DepreciationBenchmark {
+
+    private static final BigDecimal CURRENT_VALUE = new BigDecimal("32450.00");
+    private static final double MONTHLY_RATE = 0.012;
+
+    @Param({ "12", "60", "120" })
+    public int months;
+
+    private final DepreciationForecaster forecaster = new DepreciationForecaster();
+
+    @Benchmark
+    public List<MonthlyDepreciation> monthByMonthLoop() {
+        List<MonthlyDepreciation> forecast = new ArrayList<>();
+        BigDecimal value = CURRENT_VALUE;
+        for (int i = 1; i <= months; i++) {
+            value = value.multiply(BigDecimal.valueOf(1 - MONTHLY_RATE));
+            forecast.add(MonthlyDepreciation.builder()
+                    .month(i)
+                    .projectedValue(value)
+                    .depreciationAmount(CURRENT_VALUE.subtract(value))
+                    .build());
+        }
+        return forecast;
+    }
+
+    @Benchmark
+    public List<MonthlyDepreciation> closedFormEveryMonth() {
+        return forecaster.forecast(CURRENT_VALUE, months, MONTHLY_RATE, 1, false);
+    }
+
+    @Benchmark
+    public List<MonthlyDepreciation> closedFormQuarterly() {
+        return forecaster.forecast(CURRENT_VALUE, months, MONTHLY_RATE, 3, false);
+    }
+
+    @Benchmark
+    public List<MonthlyDepreciation> closedFormSummary() {
+        return forecaster.forecast(CURRENT_VALUE, months, MONTHLY_RATE, 1, true);
+    }
+}
@@ -0,0 +1,117 @@
+package com.rjtmahinay.collateral.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rjtmahinay.collateral.CollateralServiceApplication;
+import com.rjtmahinay.collateral.repository.CollateralRepository;
+import com.rjtmahinay.collateral.service.ExportTable;
+import com.rjtmahinay.collateral.service.SnapshotExportService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.Exceptions;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-table export of {@code rows} collaterals from embedded PostgreSQL: the CSV snapshot export against reading
+ * the same rows as entities and serializing each to JSON, as the list endpoints do. Both return the bytes
+ * produced; divide {@code rows} by the score for rows per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ExportBenchmark {
+
+    private static final String SEED = "INSERT INTO collateral (collateral_id, customer_id, account_id, type, "
+            + "description, estimated_value, market_value, currency, status, location, evaluation_date, "
+            + "available_value, encumbered_value) "
+            + "SELECT 'COL-' || g, 'CUST-' || (g % 100000), 'ACC-' || (g % 100000), 'VEHICLE', "
+            + "'Benchmark vehicle ' || g, 25000.00 + g % 1000, 25000.00 + g % 1000, 'USD', "
+            + "CASE WHEN g % 3 = 0 THEN 'ENCUMBERED' ELSE 'AVAILABLE' END, 'CA', now(), "
+            + "25000.00 + g % 1000, 0 FROM generate_series(1, :rows) g";
+
+    @Param({ "10000000" })
+    public int rows;
+
+    private EmbeddedPostgres postgres;
+    private ConfigurableApplicationContext context;
+    private SnapshotExportService snapshotExportService;
+    private CollateralRepository collateralRepository;
+    private ObjectMapper objectMapper;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        context = new SpringApplicationBuilder(CollateralServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("postgres")
+                .properties(
+                        "spring.r2dbc.url=r2dbc:postgresql://localhost:" + postgres.getPort() + "/postgres",
+                        "spring.r2dbc.username=postgres",
+                        "spring.r2dbc.password=",
+                        "logging.level.root=WARN",
+                        "logging.level.com.rjtmahinay.collateral=WARN")
+                .run();
+        snapshotExportService = context.getBean(SnapshotExportService.class);
+        collateralRepository = context.getBean(CollateralRepository.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+
+        context.getBean(DatabaseClient.class).sql(SEED)
+                .bind("rows", rows)
+                .fetch()
+                .rowsUpdated()
+                .block();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        context.close();
+        postgres.close();
+    }
+
+    @Benchmark
+    public Long csvExport() {
+        return snapshotExportService.exportCsv(ExportTable.COLLATERAL, null, null)
+                .reduce(0L, (bytes, buffer) -> {
+                    long size = buffer.readableByteCount();
+                    DataBufferUtils.release(buffer);
+                    return bytes + size;
+                })
+                .block();
+    }
+
+    @Benchmark
+    public Long entityJson() {
+        return collateralRepository.findAll()
+                .map(collateral -> {
+                    try {
+                        return (long) objectMapper.writeValueAsBytes(collateral).length;
+                    } catch (JsonProcessingException e) {
+                        throw Exceptions.propagate(e);
+                    }
+                })
+                .reduce(0L, Long::sum)
+                .block();
+    }
+}
@@ -0,0 +1,67 @@
+package com.rjtmahinay.collateral.benchmark;
+
+import com.rjtmahinay.collateral.CollateralServiceApplication;
+import com.rjtmahinay.collateral.model.Collateral;
+import com.rjtmahinay.collateral.service.CollateralService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares write throughput with the application logging at INFO through the synchronous console appender
+ * against the default async appender. Run with output redirected, e.g. {@code > /dev/null}, so the terminal
+ * does not dominate the synchronous case.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class LoggingBenchmark {
+
+    @Param({ "sync-logging", "async-logging" })
+    public String profile;
+
+    private ConfigurableApplicationContext context;
+    private CollateralService collateralService;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(CollateralServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles(profile)
+                .properties(
+                        "logging.level.root=INFO",
+                        "logging.level.com.rjtmahinay.collateral=INFO")
+                .run();
+        collateralService = context.getBean(CollateralService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public Collateral createCollateral() {
+        return collateralService.createCollateral(ServiceBenchmark.newCollateral()).block();
+    }
+}
@@ -0,0 +1,70 @@
+package com.rjtmahinay.collateral.benchmark;
+
+import com.rjtmahinay.collateral.dto.AutoLoanDto.LoanToValueRequest;
+import com.rjtmahinay.collateral.dto.AutoLoanDto.LoanToValueResponse;
+import com.rjtmahinay.collateral.service.AutoLoanValuationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LTV for 100k loans through the single-request path, one call per loan, against the chunked batch path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LtvBenchmark {
+
+    private static final int LOANS = 100_000;
+
+    private AutoLoanValuationService autoLoanValuationService;
+    private List<LoanToValueRequest> requests;
+
+    @Setup(Level.Trial)
+    public void setUp(ApplicationState application) {
+        autoLoanValuationService = application.getBean(AutoLoanValuationService.class);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        requests = new ArrayList<>(LOANS);
+        for (int i = 0; i < LOANS; i++) {
+            requests.add(LoanToValueRequest.builder()
+                    .collateralId("COL-" + i)
+                    .loanAmount(BigDecimal.valueOf(random.nextLong(500_000, 5_000_000), 2))
+                    .vehicleValue(BigDecimal.valueOf(random.nextLong(1_000_000, 6_000_000), 2))
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public List<LoanToValueResponse> single() {
+        return Flux.fromIterable(requests)
+                .concatMap(autoLoanValuationService::calculateAutoLoanLTV)
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public List<LoanToValueResponse> batch() {
+        return autoLoanValuationService.calculateAutoLoanLTVs(Flux.fromIterable(requests))
+                .collectList()
+                .block();
+    }
+}
@@ -0,0 +1,98 @@
+package com.rjtmahinay.collateral.benchmark;
+
+import com.rjtmahinay.collateral.CollateralServiceApplication;
+import com.rjtmahinay.collateral.model.Collateral;
+import com.rjtmahinay.collateral.model.Encumbrance;
+import com.rjtmahinay.collateral.service.CollateralService;
+import com.rjtmahinay.collateral.service.EncumbranceService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test for the {@code postgres} profile against an embedded PostgreSQL binary, run once per pool size.
+ * Sixteen client threads contend for the pool, so throughput flattens once {@code maxSize} stops being the
+ * bottleneck and {@code r2dbc.pool.pending} drops to zero.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+@Fork(1)
+public class PoolSizeBenchmark {
+
+    @Param({ "2", "5", "10", "20", "40" })
+    public int poolSize;
+
+    private EmbeddedPostgres postgres;
+    private ConfigurableApplicationContext context;
+    private CollateralService collateralService;
+    private EncumbranceService encumbranceService;
+
+    private String collateralId;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        postgres = EmbeddedPostgres.builder()
+                .setServerConfig("max_connections", "100")
+                .start();
+        context = new SpringApplicationBuilder(CollateralServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("postgres")
+                .properties(
+                        "spring.r2dbc.url=r2dbc:postgresql://localhost:" + postgres.getPort() + "/postgres",
+                        "spring.r2dbc.username=postgres",
+                        "spring.r2dbc.password=",
+                        "spring.r2dbc.pool.initial-size=" + poolSize,
+                        "spring.r2dbc.pool.max-size=" + poolSize,
+                        "logging.level.root=WARN",
+                        "logging.level.com.rjtmahinay.collateral=WARN")
+                .run();
+        collateralService = context.getBean(CollateralService.class);
+        encumbranceService = context.getBean(EncumbranceService.class);
+
+        collateralId = collateralService.createCollateral(ServiceBenchmark.newCollateral()).block().getCollateralId();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        context.close();
+        postgres.close();
+    }
+
+    @Benchmark
+    public Collateral createCollateral() {
+        return collateralService.createCollateral(ServiceBenchmark.newCollateral()).block();
+    }
+
+    @Benchmark
+    public Encumbrance createEncumbrance() {
+        return encumbranceService.createEncumbrance(ServiceBenchmark.newEncumbrance(collateralId)).block();
+    }
+
+    @Benchmark
+    public List<Collateral> getCollateralsByCustomerId() {
+        return collateralService.getCollateralsByCustomerId("CUST-001").collectList().block();
+    }
+}
@@ -0,0 +1,109 @@
+package com.rjtmahinay.collateral.benchmark;
+
+import com.rjtmahinay.collateral.dto.AutoLoanDto.VehicleAppraisalRequest;
+import com.rjtmahinay.collateral.dto.AutoLoanDto.VehicleAppraisalResponse;
+import com.rjtmahinay.collateral.model.Collateral;
+import com.rjtmahinay.collateral.model.CollateralStatus;
+import com.rjtmahinay.collateral.model.CollateralType;
+import com.rjtmahinay.collateral.model.Encumbrance;
+import com.rjtmahinay.collateral.model.EncumbranceStatus;
+import com.rjtmahinay.collateral.model.EncumbranceType;
+import com.rjtmahinay.collateral.service.AutoLoanValuationService;
+import com.rjtmahinay.collateral.service.CollateralService;
+import com.rjtmahinay.collateral.service.EncumbranceService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Baseline for the write hot paths. Throughput gives ops/sec, SampleTime gives the p99 latency and
+ * the default {@code -prof gc} profiler reports gc.alloc.rate.norm per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ServiceBenchmark {
+
+    private CollateralService collateralService;
+    private EncumbranceService encumbranceService;
+    private AutoLoanValuationService autoLoanValuationService;
+
+    private String collateralId;
+
+    @Setup(Level.Trial)
+    public void setUp(ApplicationState application) {
+        collateralService = application.getBean(CollateralService.class);
+        encumbranceService = application.getBean(EncumbranceService.class);
+        autoLoanValuationService = application.getBean(AutoLoanValuationService.class);
+
+        collateralId = collateralService.createCollateral(newCollateral()).block().getCollateralId();
+    }
+
+    @Benchmark
+    public Collateral createCollateral() {
+        return collateralService.createCollateral(newCollateral()).block();
+    }
+
+    @Benchmark
+    public Encumbrance createEncumbrance() {
+        return encumbranceService.createEncumbrance(newEncumbrance(collateralId)).block();
+    }
+
+    @Benchmark
+    public VehicleAppraisalResponse performVehicleAppraisal() {
+        return autoLoanValuationService.performVehicleAppraisal(VehicleAppraisalRequest.builder()
+                .vin("1HGCM82633A004352")
+                .year(2021)
+                .make("HONDA")
+                .model("ACCORD")
+                .mileage(30000)
+                .condition("GOOD")
+                .zipCode("90210")
+                .build()).block();
+    }
+
+    static Collateral newCollateral() {
+        return Collateral.builder()
+                .customerId("CUST-BENCH")
+                .accountId("ACC-BENCH")
+                .type(CollateralType.VEHICLE)
+                .description("Benchmark vehicle fleet")
+                .estimatedValue(BigDecimal.valueOf(1_000_000_000L))
+                .marketValue(BigDecimal.valueOf(1_000_000_000L))
+                .currency("USD")
+                .status(CollateralStatus.ACTIVE)
+                .location("Benchmark City")
+                .evaluationDate(LocalDateTime.now())
+                .build();
+    }
+
+    static Encumbrance newEncumbrance(String collateralId) {
+        return Encumbrance.builder()
+                .collateralId(collateralId)
+                .loanId("LOAN-BENCH")
+                .customerId("CUST-BENCH")
+                .amount(BigDecimal.ONE)
+                .currency("USD")
+                .type(EncumbranceType.LIEN)
+                .status(EncumbranceStatus.ACTIVE)
+                .effectiveDate(LocalDateTime.now())
+                .expiryDate(LocalDateTime.now().plusYears(5))
+                .priority(1)
+                .build();
+    }
+}
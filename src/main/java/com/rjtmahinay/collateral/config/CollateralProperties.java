@@ -0,0 +1,184 @@
+package com.rjtmahinay.collateral.config;
+
+import com.rjtmahinay.collateral.model.CollateralStatus;
+import com.rjtmahinay.collateral.model.CollateralType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "collateral")
+public class CollateralProperties {
+
+    private Reconciliation reconciliation = new Reconciliation();
+    private Posting posting = new Posting();
+    private Bulk bulk = new Bulk();
+    private Cache cache = new Cache();
+    private Pagination pagination = new Pagination();
+    private RequestLog requestLog = new RequestLog();
+    private Ltv ltv = new Ltv();
+    private Revaluation revaluation = new Revaluation();
+    private Expiry expiry = new Expiry();
+    private ChangeEvents changeEvents = new ChangeEvents();
+    private Exposure exposure = new Exposure();
+    private Idempotency idempotency = new Idempotency();
+    private Export export = new Export();
+    private BulkImport bulkImport = new BulkImport();
+    private AvailableIndex availableIndex = new AvailableIndex();
+    private Allocation allocation = new Allocation();
+
+    @Data
+    public static class Reconciliation {
+        private boolean enabled = true;
+        private Duration interval = Duration.ofMinutes(15);
+        private boolean repair = true;
+    }
+
+    @Data
+    public static class Posting {
+        // Retries after an optimistic version conflict on collateral or encumbrance rows
+        private int maxRetries = 5;
+        private Duration minBackoff = Duration.ofMillis(20);
+        private Duration maxBackoff = Duration.ofMillis(500);
+    }
+
+    @Data
+    public static class Bulk {
+        // Rows per multi-row INSERT statement
+        private int batchSize = 500;
+        // Batches in flight at once; keep at or below the connection pool size
+        private int concurrency = 2;
+    }
+
+    @Data
+    public static class Cache {
+        // Read-through cache for collateral lookups by collateralId
+        private long maximumSize = 10_000;
+        private Duration expireAfterWrite = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Pagination {
+        private int defaultLimit = 100;
+        private int maxLimit = 1000;
+        // Rows fetched per round trip by the NDJSON streaming endpoints
+        private int streamPageSize = 500;
+    }
+
+    @Data
+    public static class RequestLog {
+        private boolean enabled = true;
+        // Fraction of successful requests logged; failed and slow requests are always logged
+        private double sampleRate = 0.01;
+        private Duration slowThreshold = Duration.ofMillis(500);
+    }
+
+    @Data
+    public static class Ltv {
+        // Requests computed per task by the batch LTV endpoint
+        private int chunkSize = 4096;
+        // Chunks computed at once on the parallel scheduler
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    @Data
+    public static class Revaluation {
+        private boolean enabled = false;
+        private String cron = "0 0 2 * * *";
+        // Collateral selected for mark-to-market
+        private List<CollateralType> types = List.of(CollateralType.values());
+        private List<CollateralStatus> statuses = List.of(CollateralStatus.ACTIVE, CollateralStatus.AVAILABLE,
+                CollateralStatus.ENCUMBERED, CollateralStatus.PARTIALLY_ENCUMBERED);
+        // Collaterals per valuation INSERT / collateral UPDATE; the checkpoint advances once per committed batch
+        private int batchSize = 500;
+        // Batches written at once; keep at or below the connection pool size
+        private int concurrency = 2;
+    }
+
+    @Data
+    public static class Expiry {
+        private boolean enabled = true;
+        private Duration interval = Duration.ofMinutes(5);
+        // Encumbrances expired per transaction; bounds how long their rows and collateral balances stay locked
+        private int chunkSize = 500;
+    }
+
+    @Data
+    public static class ChangeEvents {
+        // How often an idle change stream checks the outbox for new events
+        private Duration pollInterval = Duration.ofMillis(500);
+        // How long the feed waits at a missing id for its transaction to commit before treating it as rolled back;
+        // keep it above the longest transaction that writes change events
+        private Duration gapTimeout = Duration.ofMinutes(1);
+        private int pageSize = 500;
+        private Duration retention = Duration.ofDays(7);
+    }
+
+    @Data
+    public static class Exposure {
+        // Cached customer exposure summaries; a cached read may trail writes by up to expireAfterWrite
+        private long maximumSize = 10_000;
+        private Duration expireAfterWrite = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Idempotency {
+        // Responses kept per Idempotency-Key; a retry after expireAfterWrite creates a new row
+        private long maximumSize = 50_000;
+        private Duration expireAfterWrite = Duration.ofHours(1);
+    }
+
+    @Data
+    public static class Export {
+        // Rows read and encoded per query; bounds the memory an export holds at once
+        private int pageSize = 5000;
+    }
+
+    @Data
+    public static class BulkImport {
+        // Runs the import at startup and exits; see PortfolioImportRunner
+        private boolean enabled = false;
+        private String collateralFile;
+        private String encumbranceFile;
+        private String titleFile;
+        private int batchSize = 1000;
+        // Batches in flight at once; keep at or below the connection pool size
+        private int concurrency = 4;
+        // Drop the secondary indexes of the loaded tables during the load and rebuild them once at the end
+        private boolean deferIndexes = true;
+        // Recompute every collateral's encumbered and available value from its ACTIVE encumbrances afterwards
+        private boolean recomputeBalances = true;
+        private Duration progressInterval = Duration.ofSeconds(10);
+        // Rejected rows logged individually; the rest are only counted
+        private int maxLoggedRejections = 100;
+    }
+
+    @Data
+    public static class AvailableIndex {
+        // Serve available-collateral queries from memory; holds every AVAILABLE collateral row on the heap
+        private boolean enabled = true;
+        // How often the index is compared with the collateral table and repaired
+        private Duration verifyInterval = Duration.ofMinutes(10);
+        // Written collaterals re-read from the database per query after commit
+        private int refreshBatchSize = 256;
+    }
+
+    @Data
+    public static class Allocation {
+        // Loan amount as a share of the haircut value of the pledged collateral; requests may only lower it
+        private BigDecimal maxLtv = new BigDecimal("0.85");
+        // Share of the available value that does not count towards the loan, per collateral type
+        private Map<CollateralType, BigDecimal> haircuts = new EnumMap<>(
+                Map.of(CollateralType.VEHICLE, new BigDecimal("0.15")));
+        private BigDecimal defaultHaircut = new BigDecimal("0.25");
+        // Used when the request does not set maxLienRank; 1 pledges unencumbered collateral only
+        private int maxLienRank = 1;
+        // Nodes the bounded search may visit before settling for the best plan found so far
+        private int searchBudget = 100_000;
+    }
+}
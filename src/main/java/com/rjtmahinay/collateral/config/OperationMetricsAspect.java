@@ -0,0 +1,136 @@
+package com.rjtmahinay.collateral.config;
+
+import com.rjtmahinay.collateral.model.AutoValuation;
+import com.rjtmahinay.collateral.model.Collateral;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Times every public service method and every repository query. Reactive results are timed from subscription to
+ * termination rather than assembly, so each attempt of a retried operation is recorded on its own.
+ * Percentile histograms are enabled per timer name under {@code management.metrics.distribution}.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class OperationMetricsAspect {
+
+    private static final String SERVICE_TIMER = "collateral.service";
+    private static final String REPOSITORY_TIMER = "collateral.repository";
+
+    private static final String REPOSITORY_PACKAGE = "com.rjtmahinay.collateral.repository";
+
+    private static final String NONE = "none";
+
+    private final MeterRegistry meterRegistry;
+    // Proxy class -> simple name of the repository interface it implements
+    private final Map<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+    @Around("execution(public * com.rjtmahinay.collateral.service..*(..)) && @within(org.springframework.stereotype.Service)")
+    public Object timeServiceOperation(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(SERVICE_TIMER, joinPoint, joinPoint.getSignature().getDeclaringType().getSimpleName());
+    }
+
+    @Around("execution(* com.rjtmahinay.collateral.repository.*Repository.*(..))")
+    public Object timeRepositoryQuery(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(REPOSITORY_TIMER, joinPoint, repositoryName(joinPoint));
+    }
+
+    private Object time(String timerName, ProceedingJoinPoint joinPoint, String typeName) throws Throwable {
+        String operation = typeName + "." + joinPoint.getSignature().getName();
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable error) {
+            stop(sample, timerName, operation, "error", NONE);
+            throw error;
+        }
+
+        if (result instanceof Mono<?> mono) {
+            return timed(mono, timerName, operation);
+        }
+        if (result instanceof Flux<?> flux) {
+            return timed(flux, timerName, operation);
+        }
+        stop(sample, timerName, operation, "success", collateralTypeOf(result));
+        return result;
+    }
+
+    private <T> Mono<T> timed(Mono<T> source, String timerName, String operation) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return source
+                    .doOnSuccess(value -> stop(sample, timerName, operation, "success", collateralTypeOf(value)))
+                    .doOnError(error -> stop(sample, timerName, operation, "error", NONE))
+                    .doOnCancel(() -> stop(sample, timerName, operation, "cancelled", NONE));
+        });
+    }
+
+    private <T> Flux<T> timed(Flux<T> source, String timerName, String operation) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            // A Flux is tagged with the collateral type of its first element
+            AtomicReference<String> collateralType = new AtomicReference<>(NONE);
+            return source
+                    .doOnNext(value -> collateralType.compareAndSet(NONE, collateralTypeOf(value)))
+                    .doOnComplete(() -> stop(sample, timerName, operation, "success", collateralType.get()))
+                    .doOnError(error -> stop(sample, timerName, operation, "error", collateralType.get()))
+                    .doOnCancel(() -> stop(sample, timerName, operation, "cancelled", collateralType.get()));
+        });
+    }
+
+    private void stop(Timer.Sample sample, String timerName, String operation, String outcome,
+            String collateralType) {
+        sample.stop(Timer.builder(timerName)
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .tag("collateral.type", collateralType)
+                .register(meterRegistry));
+    }
+
+    // Inherited CRUD methods are declared on the Spring Data base interfaces, so name them after the repository
+    // interface the proxy implements instead, e.g. CollateralRepository.save rather than ReactiveCrudRepository.save
+    private String repositoryName(ProceedingJoinPoint joinPoint) {
+        Object proxy = joinPoint.getThis();
+        if (proxy == null) {
+            return joinPoint.getSignature().getDeclaringType().getSimpleName();
+        }
+        return repositoryNames.computeIfAbsent(proxy.getClass(), proxyClass -> {
+            Class<?> repository = null;
+            for (Class<?> candidate : AopProxyUtils.proxiedUserInterfaces(proxy)) {
+                // The most specific one when the proxy also lists a fragment interface
+                if (candidate.getPackageName().equals(REPOSITORY_PACKAGE)
+                        && (repository == null || repository.isAssignableFrom(candidate))) {
+                    repository = candidate;
+                }
+            }
+            return repository != null
+                    ? repository.getSimpleName()
+                    : joinPoint.getSignature().getDeclaringType().getSimpleName();
+        });
+    }
+
+    private static String collateralTypeOf(Object value) {
+        if (value instanceof Collateral collateral && collateral.getType() != null) {
+            return collateral.getType().name();
+        }
+        if (value instanceof AutoValuation valuation && valuation.getType() != null) {
+            return valuation.getType();
+        }
+        return NONE;
+    }
+}
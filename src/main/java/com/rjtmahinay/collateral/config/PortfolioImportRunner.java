@@ -0,0 +1,43 @@
+package com.rjtmahinay.collateral.config;
+
+import com.rjtmahinay.collateral.dto.ImportReport;
+import com.rjtmahinay.collateral.service.PortfolioImportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the portfolio import once the context is up and exits with its result, so the service doubles as an
+ * offline load command when started with {@code collateral.bulk-import.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "collateral.bulk-import", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class PortfolioImportRunner implements ApplicationRunner {
+
+    private final PortfolioImportService portfolioImportService;
+    private final ConfigurableApplicationContext context;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int exitCode;
+        try {
+            ImportReport report = portfolioImportService.importPortfolio().block();
+            log.info("Portfolio import finished in {}ms (index rebuild {}ms, balance recompute {}ms): {}",
+                    report.getElapsedMillis(), report.getIndexRebuildMillis(), report.getBalanceRecomputeMillis(),
+                    report.getTables());
+            exitCode = report.getTables().stream().anyMatch(table -> table.getRejected() > 0) ? 2 : 0;
+        } catch (RuntimeException e) {
+            log.error("Portfolio import failed", e);
+            exitCode = 1;
+        }
+        int code = exitCode;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+}
@@ -0,0 +1,76 @@
+package com.rjtmahinay.collateral.config;
+
+import io.micrometer.context.ContextRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Tags every request with a request id, carried in the Reactor context and restored into the MDC around each
+ * operator by automatic context propagation, and writes one sampled summary line per request in place of
+ * per-call INFO logging. Failed and slow requests are always logged.
+ */
+@Component
+@Slf4j(topic = "com.rjtmahinay.collateral.request")
+public class RequestLoggingFilter implements WebFilter {
+
+    public static final String REQUEST_ID = "requestId";
+    private static final String REQUEST_ID_HEADER = "X-Request-Id";
+
+    private final CollateralProperties properties;
+
+    public RequestLoggingFilter(CollateralProperties properties) {
+        this.properties = properties;
+        ContextRegistry.getInstance().registerThreadLocalAccessor(REQUEST_ID,
+                () -> MDC.get(REQUEST_ID),
+                value -> MDC.put(REQUEST_ID, value),
+                () -> MDC.remove(REQUEST_ID));
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String header = exchange.getRequest().getHeaders().getFirst(REQUEST_ID_HEADER);
+        String requestId = header != null && !header.isBlank() ? header : UUID.randomUUID().toString();
+        exchange.getResponse().getHeaders().set(REQUEST_ID_HEADER, requestId);
+
+        long start = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(signal -> logRequest(exchange, requestId, signal,
+                        Duration.ofNanos(System.nanoTime() - start)))
+                .contextWrite(context -> context.put(REQUEST_ID, requestId));
+    }
+
+    private void logRequest(ServerWebExchange exchange, String requestId, SignalType signal, Duration elapsed) {
+        CollateralProperties.RequestLog config = properties.getRequestLog();
+        if (!config.isEnabled()) {
+            return;
+        }
+
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        boolean failed = signal == SignalType.ON_ERROR || (status != null && status.isError());
+        boolean slow = elapsed.compareTo(config.getSlowThreshold()) >= 0;
+        if (!failed && !slow && ThreadLocalRandom.current().nextDouble() >= config.getSampleRate()) {
+            return;
+        }
+
+        if (failed || slow) {
+            log.warn("{} {} {} {}ms requestId={}", exchange.getRequest().getMethod(),
+                    exchange.getRequest().getPath(), status != null ? status.value() : signal, elapsed.toMillis(),
+                    requestId);
+        } else {
+            log.info("{} {} {} {}ms requestId={}", exchange.getRequest().getMethod(),
+                    exchange.getRequest().getPath(), status != null ? status.value() : signal, elapsed.toMillis(),
+                    requestId);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.rjtmahinay.collateral.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.OptimisticLockingFailureException;
+import reactor.util.retry.Retry;
+import reactor.util.retry.RetryBackoffSpec;
+
+@Configuration
+public class TransactionConfig {
+
+    @Bean
+    public RetryBackoffSpec versionConflictRetry(CollateralProperties properties) {
+        CollateralProperties.Posting posting = properties.getPosting();
+        return Retry.backoff(posting.getMaxRetries(), posting.getMinBackoff())
+                .maxBackoff(posting.getMaxBackoff())
+                .filter(OptimisticLockingFailureException.class::isInstance)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+}
@@ -0,0 +1,70 @@
+package com.rjtmahinay.collateral.controller;
+
+import com.rjtmahinay.collateral.dto.AllocationDto.AllocationRequest;
+import com.rjtmahinay.collateral.dto.AllocationDto.AllocationResult;
+import com.rjtmahinay.collateral.service.CollateralAllocationService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/api/v1/allocations")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Collateral Allocation", description = "APIs for securing a loan with the best set of a customer's collateral")
+public class AllocationController {
+
+        private final CollateralAllocationService collateralAllocationService;
+        private final IdempotencyStore idempotencyStore;
+
+        @Operation(summary = "Allocate collateral to a loan", description = "Chooses the fewest, most senior collaterals whose haircut value covers the loan at the maximum LTV and posts one encumbrance on each in a single transaction")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "201", description = "Collateral allocated and encumbrances posted", content = @Content(mediaType = "application/json", schema = @Schema(implementation = AllocationResult.class))),
+                        @ApiResponse(responseCode = "400", description = "Invalid input data"),
+                        @ApiResponse(responseCode = "422", description = "Pledgeable collateral does not cover the loan, or the idempotency key was already used for a different request")
+        })
+        @PostMapping
+        public Mono<ResponseEntity<AllocationResult>> allocate(
+                        @Parameter(description = "Loan to secure", required = true) @RequestBody AllocationRequest request,
+                        @Parameter(description = "Client-chosen key; a retry with the same key returns the original response instead of allocating again") @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+                log.debug("REST request to allocate collateral for loan: {}", request.getLoanId());
+
+                return idempotencyStore.execute("allocation", idempotencyKey, request,
+                                () -> collateralAllocationService.allocate(request)
+                                                .map(result -> CollateralAllocationService.INSUFFICIENT_COLLATERAL
+                                                                .equals(result.getStatus())
+                                                                                ? ResponseEntity.unprocessableEntity().body(result)
+                                                                                : ResponseEntity.status(HttpStatus.CREATED).body(result))
+                                                .onErrorReturn(ResponseEntity.status(HttpStatus.BAD_REQUEST).build()));
+        }
+
+        @Operation(summary = "Preview a collateral allocation", description = "Returns the pledges an allocation would post for the loan without posting them")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Proposed pledges, or INSUFFICIENT_COLLATERAL", content = @Content(mediaType = "application/json", schema = @Schema(implementation = AllocationResult.class))),
+                        @ApiResponse(responseCode = "400", description = "Invalid input data")
+        })
+        @PostMapping("/preview")
+        public Mono<ResponseEntity<AllocationResult>> previewAllocation(
+                        @Parameter(description = "Loan to secure", required = true) @RequestBody AllocationRequest request) {
+                log.debug("REST request to preview collateral allocation for loan: {}", request.getLoanId());
+
+                return collateralAllocationService.previewAllocation(request)
+                                .map(ResponseEntity::ok)
+                                .onErrorReturn(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+        }
+}
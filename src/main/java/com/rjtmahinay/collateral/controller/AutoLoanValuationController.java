@@ -12,8 +12,10 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
@@ -24,20 +26,24 @@ import reactor.core.publisher.Mono;
 public class AutoLoanValuationController {
 
         private final AutoLoanValuationService autoLoanValuationService;
+        private final IdempotencyStore idempotencyStore;
 
         @Operation(summary = "Appraise vehicle value", description = "Performs a comprehensive appraisal of a vehicle based on VIN and other details")
         @ApiResponses(value = {
                         @ApiResponse(responseCode = "200", description = "Vehicle appraisal completed successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = VehicleAppraisalResponse.class))),
-                        @ApiResponse(responseCode = "400", description = "Invalid vehicle information")
+                        @ApiResponse(responseCode = "400", description = "Invalid vehicle information"),
+                        @ApiResponse(responseCode = "422", description = "Idempotency key already used for a different request")
         })
         @PostMapping("/vehicle/appraise")
         public Mono<ResponseEntity<VehicleAppraisalResponse>> appraiseVehicle(
-                        @Parameter(description = "Vehicle appraisal request details", required = true) @RequestBody VehicleAppraisalRequest request) {
-                log.info("Vehicle appraisal request for VIN: {} - {} {} {}",
+                        @Parameter(description = "Vehicle appraisal request details", required = true) @RequestBody VehicleAppraisalRequest request,
+                        @Parameter(description = "Client-chosen key; a retry with the same key returns the original appraisal instead of running a new one") @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+                log.debug("Vehicle appraisal request for VIN: {} - {} {} {}",
                                 request.getVin(), request.getYear(), request.getMake(), request.getModel());
 
-                return autoLoanValuationService.performVehicleAppraisal(request)
-                                .map(ResponseEntity::ok);
+                return idempotencyStore.execute("appraisal", idempotencyKey, request,
+                                () -> autoLoanValuationService.performVehicleAppraisal(request)
+                                                .map(ResponseEntity::ok));
         }
 
         @Operation(summary = "Get vehicle market analysis", description = "Analyzes the vehicle market trends and pricing for a specific make, model, and year in a given location")
@@ -51,7 +57,7 @@ public class AutoLoanValuationController {
                         @Parameter(description = "Vehicle model", required = true) @RequestParam String model,
                         @Parameter(description = "Vehicle year", required = true) @RequestParam Integer year,
                         @Parameter(description = "ZIP code for market area analysis", required = true) @RequestParam String zipCode) {
-                log.info("Vehicle market analysis for {} {} {} in area: {}", year, make, model, zipCode);
+                log.debug("Vehicle market analysis for {} {} {} in area: {}", year, make, model, zipCode);
 
                 return autoLoanValuationService.analyzeVehicleMarket(make, model, year, zipCode)
                                 .map(ResponseEntity::ok);
@@ -65,7 +71,7 @@ public class AutoLoanValuationController {
         @PostMapping("/vehicle/comparable-sales")
         public Mono<ResponseEntity<VehicleComparableSalesResponse>> findComparableSales(
                         @Parameter(description = "Vehicle search criteria for comparable sales", required = true) @RequestBody VehicleComparableRequest request) {
-                log.info("Finding comparable sales for {} {} {} with {} miles",
+                log.debug("Finding comparable sales for {} {} {} with {} miles",
                                 request.getYear(), request.getMake(), request.getModel(), request.getMileage());
 
                 return autoLoanValuationService.findComparableVehicleSales(request)
@@ -80,7 +86,7 @@ public class AutoLoanValuationController {
         @PostMapping("/loan-to-value/calculate")
         public Mono<ResponseEntity<LoanToValueResponse>> calculateLoanToValue(
                         @Parameter(description = "Loan-to-value calculation request", required = true) @RequestBody LoanToValueRequest request) {
-                log.info("Calculating LTV for loan amount: {} against vehicle value: {}",
+                log.debug("Calculating LTV for loan amount: {} against vehicle value: {}",
                                 request.getLoanAmount(), request.getVehicleValue());
 
                 return autoLoanValuationService.calculateAutoLoanLTV(request)
@@ -92,6 +98,18 @@ public class AutoLoanValuationController {
                                 });
         }
 
+        @Operation(summary = "Calculate loan-to-value ratios in batch", description = "Streams LTV results for a newline-delimited JSON stream of requests, in request order; invalid requests yield an ERROR line instead of failing the stream")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Per-request LTV results", content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = LoanToValueResponse.class)))
+        })
+        @PostMapping(value = "/loan-to-value/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+        public Flux<LoanToValueResponse> calculateLoanToValueBatch(
+                        @Parameter(description = "Newline-delimited JSON stream of loan-to-value requests", required = true) @RequestBody Flux<LoanToValueRequest> requests) {
+                log.debug("Calculating LTV batch");
+
+                return autoLoanValuationService.calculateAutoLoanLTVs(requests);
+        }
+
         @Operation(summary = "Forecast vehicle depreciation", description = "Predicts future vehicle depreciation over a specified time period")
         @ApiResponses(value = {
                         @ApiResponse(responseCode = "200", description = "Depreciation forecast completed successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = DepreciationForecastResponse.class))),
@@ -100,10 +118,27 @@ public class AutoLoanValuationController {
         @PostMapping("/depreciation/forecast")
         public Mono<ResponseEntity<DepreciationForecastResponse>> forecastDepreciation(
                         @Parameter(description = "Depreciation forecasting parameters", required = true) @RequestBody DepreciationForecastRequest request) {
-                log.info("Forecasting depreciation for {} {} {} over {} months",
+                log.debug("Forecasting depreciation for {} {} {} over {} months",
                                 request.getYear(), request.getMake(), request.getModel(), request.getForecastMonths());
 
                 return autoLoanValuationService.forecastVehicleDepreciation(request)
-                                .map(ResponseEntity::ok);
+                                .map(response -> {
+                                        if ("ERROR".equals(response.getStatus())) {
+                                                return ResponseEntity.badRequest().body(response);
+                                        }
+                                        return ResponseEntity.ok(response);
+                                });
+        }
+
+        @Operation(summary = "Forecast portfolio depreciation", description = "Streams a depreciation forecast for each vehicle of a newline-delimited JSON stream of forecast requests, in request order")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Per-vehicle depreciation forecasts", content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = DepreciationForecastResponse.class)))
+        })
+        @PostMapping(value = "/depreciation/forecast/portfolio", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+        public Flux<DepreciationForecastResponse> forecastPortfolioDepreciation(
+                        @Parameter(description = "Newline-delimited JSON stream of depreciation forecast requests", required = true) @RequestBody Flux<DepreciationForecastRequest> requests) {
+                log.debug("Forecasting portfolio depreciation");
+
+                return autoLoanValuationService.forecastPortfolioDepreciation(requests);
         }
 }
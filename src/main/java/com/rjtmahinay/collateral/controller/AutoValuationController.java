@@ -1,7 +1,11 @@
 package com.rjtmahinay.collateral.controller;
 
+import com.rjtmahinay.collateral.dto.MarketStatsDrift;
+import com.rjtmahinay.collateral.dto.MarketTrend;
 import com.rjtmahinay.collateral.model.AutoValuation;
 import com.rjtmahinay.collateral.repository.AutoValuationRepository;
+import com.rjtmahinay.collateral.service.KeysetPaginator;
+import com.rjtmahinay.collateral.service.MarketStatsService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -12,6 +16,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
@@ -28,24 +33,31 @@ import java.util.UUID;
 public class AutoValuationController {
 
     private final AutoValuationRepository autoValuationRepository;
+    private final KeysetPaginator keysetPaginator;
+    private final MarketStatsService marketStatsService;
+    private final IdempotencyStore idempotencyStore;
 
     @Operation(summary = "Create a new auto valuation", description = "Creates a new auto valuation record")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Auto valuation created successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = AutoValuation.class))),
-            @ApiResponse(responseCode = "400", description = "Invalid input data")
+            @ApiResponse(responseCode = "400", description = "Invalid input data"),
+            @ApiResponse(responseCode = "422", description = "Idempotency key already used for a different request")
     })
     @PostMapping
     public Mono<ResponseEntity<AutoValuation>> createAutoValuation(
-            @Parameter(description = "Auto valuation details to create", required = true) @RequestBody AutoValuation autoValuation) {
-        log.info("REST request to create auto valuation for collateral: {}", autoValuation.getCollateralId());
-
-        autoValuation.setValuationId(UUID.randomUUID().toString());
-        autoValuation.setCreatedAt(LocalDateTime.now());
-        autoValuation.setUpdatedAt(LocalDateTime.now());
-
-        return autoValuationRepository.save(autoValuation)
-                .map(created -> ResponseEntity.status(HttpStatus.CREATED).body(created))
-                .onErrorReturn(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+            @Parameter(description = "Auto valuation details to create", required = true) @RequestBody AutoValuation autoValuation,
+            @Parameter(description = "Client-chosen key; a retry with the same key returns the original response instead of creating another valuation") @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+        log.debug("REST request to create auto valuation for collateral: {}", autoValuation.getCollateralId());
+
+        return idempotencyStore.execute("auto-valuation", idempotencyKey, autoValuation, () -> {
+            autoValuation.setValuationId(UUID.randomUUID().toString());
+            autoValuation.setCreatedAt(LocalDateTime.now());
+            autoValuation.setUpdatedAt(LocalDateTime.now());
+
+            return marketStatsService.saveValuation(autoValuation)
+                    .map(created -> ResponseEntity.status(HttpStatus.CREATED).body(created))
+                    .onErrorReturn(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+        });
     }
 
     @Operation(summary = "Get auto valuation by ID", description = "Retrieves a specific auto valuation by its unique identifier")
@@ -56,7 +68,7 @@ public class AutoValuationController {
     @GetMapping("/{valuationId}")
     public Mono<ResponseEntity<AutoValuation>> getAutoValuation(
             @Parameter(description = "Unique identifier of the auto valuation", required = true) @PathVariable String valuationId) {
-        log.info("REST request to get auto valuation: {}", valuationId);
+        log.debug("REST request to get auto valuation: {}", valuationId);
 
         return autoValuationRepository.findByValuationId(valuationId)
                 .map(valuation -> ResponseEntity.ok().body(valuation))
@@ -73,7 +85,7 @@ public class AutoValuationController {
     public Mono<ResponseEntity<AutoValuation>> updateAutoValuation(
             @Parameter(description = "Unique identifier of the auto valuation to update", required = true) @PathVariable String valuationId,
             @Parameter(description = "Updated auto valuation information", required = true) @RequestBody AutoValuation autoValuation) {
-        log.info("REST request to update auto valuation: {}", valuationId);
+        log.debug("REST request to update auto valuation: {}", valuationId);
 
         return autoValuationRepository.findByValuationId(valuationId)
                 .flatMap(existing -> {
@@ -81,7 +93,7 @@ public class AutoValuationController {
                     autoValuation.setValuationId(valuationId);
                     autoValuation.setCreatedAt(existing.getCreatedAt());
                     autoValuation.setUpdatedAt(LocalDateTime.now());
-                    return autoValuationRepository.save(autoValuation);
+                    return marketStatsService.saveValuation(autoValuation);
                 })
                 .map(updated -> ResponseEntity.ok().body(updated))
                 .defaultIfEmpty(ResponseEntity.notFound().build());
@@ -95,10 +107,10 @@ public class AutoValuationController {
     @DeleteMapping("/{valuationId}")
     public Mono<ResponseEntity<Void>> deleteAutoValuation(
             @Parameter(description = "Unique identifier of the auto valuation to delete", required = true) @PathVariable String valuationId) {
-        log.info("REST request to delete auto valuation: {}", valuationId);
+        log.debug("REST request to delete auto valuation: {}", valuationId);
 
         return autoValuationRepository.findByValuationId(valuationId)
-                .flatMap(existing -> autoValuationRepository.deleteById(existing.getId()))
+                .flatMap(existing -> marketStatsService.deleteValuation(existing))
                 .then(Mono.just(ResponseEntity.noContent().<Void>build()))
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
@@ -110,19 +122,35 @@ public class AutoValuationController {
     @GetMapping("/collateral/{collateralId}")
     public Flux<AutoValuation> getAutoValuationsByCollateral(
             @Parameter(description = "Unique identifier of the collateral", required = true) @PathVariable String collateralId) {
-        log.info("REST request to get auto valuations for collateral: {}", collateralId);
+        log.debug("REST request to get auto valuations for collateral: {}", collateralId);
         return autoValuationRepository.findByCollateralId(collateralId);
     }
 
-    @Operation(summary = "Get auto valuations by type", description = "Retrieves all auto valuations for a specific type")
+    @Operation(summary = "Get auto valuations by type", description = "Retrieves one page of auto valuations for a specific type, ordered by id")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "List of auto valuations for the type", content = @Content(mediaType = "application/json", schema = @Schema(implementation = AutoValuation.class)))
+            @ApiResponse(responseCode = "200", description = "Page of auto valuations for the type", content = @Content(mediaType = "application/json", schema = @Schema(implementation = AutoValuation.class)))
     })
-    @GetMapping("/type/{type}")
+    @GetMapping(value = "/type/{type}", produces = MediaType.APPLICATION_JSON_VALUE)
     public Flux<AutoValuation> getAutoValuationsByType(
-            @Parameter(description = "Collateral type", required = true) @PathVariable String type) {
-        log.info("REST request to get auto valuations for type: {}", type);
-        return autoValuationRepository.findByType(type);
+            @Parameter(description = "Collateral type", required = true) @PathVariable String type,
+            @Parameter(description = "Return rows with an id greater than this cursor; pass the id of the last row of the previous page") @RequestParam(required = false) Long afterId,
+            @Parameter(description = "Maximum number of rows to return (default 100, capped at 1000)") @RequestParam(required = false) Integer limit) {
+        log.debug("REST request to get auto valuations for type: {} after id: {}", type, afterId);
+        return autoValuationRepository.findByTypeAfter(type, keysetPaginator.afterId(afterId),
+                keysetPaginator.limit(limit));
+    }
+
+    @Operation(summary = "Stream auto valuations by type", description = "Streams all auto valuations for a specific type as newline-delimited JSON, fetched page by page as the client consumes them")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stream of auto valuations for the type", content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = AutoValuation.class)))
+    })
+    @GetMapping(value = "/type/{type}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<AutoValuation> streamAutoValuationsByType(
+            @Parameter(description = "Collateral type", required = true) @PathVariable String type,
+            @Parameter(description = "Start streaming after this id") @RequestParam(required = false) Long afterId) {
+        log.debug("REST request to stream auto valuations for type: {}", type);
+        return keysetPaginator.stream(afterId,
+                (after, limit) -> autoValuationRepository.findByTypeAfter(type, after, limit), AutoValuation::getId);
     }
 
     @Operation(summary = "Get auto valuations by location", description = "Retrieves all auto valuations for a specific location")
@@ -132,7 +160,7 @@ public class AutoValuationController {
     @GetMapping("/location/{location}")
     public Flux<AutoValuation> getAutoValuationsByLocation(
             @Parameter(description = "Location identifier", required = true) @PathVariable String location) {
-        log.info("REST request to get auto valuations for location: {}", location);
+        log.debug("REST request to get auto valuations for location: {}", location);
         return autoValuationRepository.findByLocation(location);
     }
 
@@ -143,7 +171,7 @@ public class AutoValuationController {
     @GetMapping("/status/{status}")
     public Flux<AutoValuation> getAutoValuationsByStatus(
             @Parameter(description = "Valuation status", required = true) @PathVariable AutoValuation.ValuationStatus status) {
-        log.info("REST request to get auto valuations by status: {}", status);
+        log.debug("REST request to get auto valuations by status: {}", status);
         return autoValuationRepository.findByStatus(status);
     }
 
@@ -155,7 +183,7 @@ public class AutoValuationController {
     @GetMapping("/collateral/{collateralId}/latest")
     public Mono<ResponseEntity<AutoValuation>> getLatestAutoValuationByCollateral(
             @Parameter(description = "Unique identifier of the collateral", required = true) @PathVariable String collateralId) {
-        log.info("REST request to get latest auto valuation for collateral: {}", collateralId);
+        log.debug("REST request to get latest auto valuation for collateral: {}", collateralId);
 
         return autoValuationRepository.findLatestByCollateralId(collateralId)
                 .map(valuation -> ResponseEntity.ok().body(valuation))
@@ -168,7 +196,40 @@ public class AutoValuationController {
     })
     @GetMapping("/statuses")
     public Mono<ResponseEntity<AutoValuation.ValuationStatus[]>> getAutoValuationStatuses() {
-        log.info("REST request to get all auto valuation statuses");
+        log.debug("REST request to get all auto valuation statuses");
         return Mono.just(ResponseEntity.ok().body(AutoValuation.ValuationStatus.values()));
     }
+
+    @Operation(summary = "Get market trends", description = "Retrieves monthly valuation statistics for a type and location from the precomputed market statistics, newest first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Monthly market statistics", content = @Content(mediaType = "application/json", schema = @Schema(implementation = MarketTrend.class)))
+    })
+    @GetMapping("/market-stats/trends")
+    public Flux<MarketTrend> getMarketTrends(
+            @Parameter(description = "Collateral type", required = true) @RequestParam String type,
+            @Parameter(description = "Location identifier", required = true) @RequestParam String location) {
+        log.debug("REST request to get market trends for type: {} in location: {}", type, location);
+        return marketStatsService.getTrends(type, location);
+    }
+
+    @Operation(summary = "Rebuild market statistics", description = "Recomputes the market statistics table from all auto valuations, e.g. to backfill after a bulk load")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Number of market statistics buckets written")
+    })
+    @PostMapping("/market-stats/rebuild")
+    public Mono<ResponseEntity<Integer>> rebuildMarketStats() {
+        log.debug("REST request to rebuild market statistics");
+        return marketStatsService.rebuild()
+                .map(ResponseEntity::ok);
+    }
+
+    @Operation(summary = "Check market statistics consistency", description = "Compares the market statistics table with a fresh aggregation of auto valuations and lists every bucket that differs")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Buckets whose statistics differ from the valuations", content = @Content(mediaType = "application/json", schema = @Schema(implementation = MarketStatsDrift.class)))
+    })
+    @GetMapping("/market-stats/consistency")
+    public Flux<MarketStatsDrift> checkMarketStatsConsistency() {
+        log.debug("REST request to check market statistics consistency");
+        return marketStatsService.findDrift();
+    }
 }
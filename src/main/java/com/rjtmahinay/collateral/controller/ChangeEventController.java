@@ -0,0 +1,61 @@
+package com.rjtmahinay.collateral.controller;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.rjtmahinay.collateral.model.ChangeEvent;
+import com.rjtmahinay.collateral.service.ChangeEventService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+@RestController
+@RequestMapping("/api/v1/changes")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Change Feed", description = "APIs for tailing collateral and encumbrance changes from the outbox")
+public class ChangeEventController {
+
+    private final ChangeEventService changeEventService;
+
+    @Operation(summary = "Stream changes", description = "Streams every collateral and encumbrance change after the given event id as newline-delimited JSON, then keeps the connection open and pushes new changes as they commit")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Unbounded stream of change events in id order", content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = ChangeEvent.class)))
+    })
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ChangeEvent> streamChanges(
+            @Parameter(description = "Resume after this event id; pass the id of the last event received") @RequestParam(required = false) Long afterId) {
+        log.debug("REST request to stream changes after id: {}", afterId);
+        return changeEventService.streamChanges(afterId);
+    }
+
+    @Operation(summary = "Stream changes as server-sent events", description = "Same feed as the NDJSON stream, with each event's id as the SSE id so a reconnecting client resumes from Last-Event-ID")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Unbounded stream of change events in id order", content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE, schema = @Schema(implementation = ChangeEvent.class)))
+    })
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ChangeEvent>> streamChangeEvents(
+            @Parameter(description = "Resume after this event id; ignored when Last-Event-ID is sent") @RequestParam(required = false) Long afterId,
+            @Parameter(description = "Id of the last event received, sent by the browser on reconnect") @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+        Long resumeAfter = lastEventId != null ? lastEventId : afterId;
+        log.debug("REST request to stream change events after id: {}", resumeAfter);
+        return changeEventService.streamChanges(resumeAfter)
+                .map(event -> ServerSentEvent.builder(event)
+                        .id(String.valueOf(event.getId()))
+                        .event(event.getAggregateType() + "_" + event.getEventType())
+                        .build());
+    }
+}
@@ -3,6 +3,7 @@ package com.rjtmahinay.collateral.controller;
 import java.math.BigDecimal;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -11,14 +12,18 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.rjtmahinay.collateral.dto.BulkDto.BulkItemResult;
+import com.rjtmahinay.collateral.dto.CustomerExposure;
 import com.rjtmahinay.collateral.model.Collateral;
 import com.rjtmahinay.collateral.model.CollateralStatus;
 import com.rjtmahinay.collateral.model.CollateralType;
 import com.rjtmahinay.collateral.service.CollateralService;
+import com.rjtmahinay.collateral.service.CustomerExposureService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -40,20 +45,36 @@ import reactor.core.publisher.Mono;
 public class CollateralController {
 
     private final CollateralService collateralService;
+    private final CustomerExposureService customerExposureService;
+    private final IdempotencyStore idempotencyStore;
 
     @Operation(summary = "Create a new collateral", description = "Creates a new collateral asset for a customer")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Collateral created successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Collateral.class))),
-            @ApiResponse(responseCode = "400", description = "Invalid input data")
+            @ApiResponse(responseCode = "400", description = "Invalid input data"),
+            @ApiResponse(responseCode = "422", description = "Idempotency key already used for a different request")
     })
     @PostMapping
     public Mono<ResponseEntity<Collateral>> createCollateral(
-            @Parameter(description = "Collateral details to create", required = true) @RequestBody Collateral collateral) {
-        log.info("REST request to create collateral for customer: {}", collateral.getCustomerId());
+            @Parameter(description = "Collateral details to create", required = true) @RequestBody Collateral collateral,
+            @Parameter(description = "Client-chosen key; a retry with the same key returns the original response instead of creating another collateral") @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+        log.debug("REST request to create collateral for customer: {}", collateral.getCustomerId());
 
-        return collateralService.createCollateral(collateral)
-                .map(created -> ResponseEntity.status(HttpStatus.CREATED).body(created))
-                .onErrorReturn(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+        return idempotencyStore.execute("collateral", idempotencyKey, collateral,
+                () -> collateralService.createCollateral(collateral)
+                        .map(created -> ResponseEntity.status(HttpStatus.CREATED).body(created))
+                        .onErrorReturn(ResponseEntity.status(HttpStatus.BAD_REQUEST).build()));
+    }
+
+    @Operation(summary = "Bulk create collaterals", description = "Ingests a stream of newline-delimited JSON collaterals using batched inserts and streams back one result per record with the generated collateral ID or the error")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Per-record ingestion results", content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = BulkItemResult.class)))
+    })
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BulkItemResult> createCollaterals(
+            @Parameter(description = "Newline-delimited JSON stream of collaterals to create", required = true) @RequestBody Flux<Collateral> collaterals) {
+        log.debug("REST request to bulk create collaterals");
+        return collateralService.createCollaterals(collaterals);
     }
 
     @Operation(summary = "Get collateral by ID", description = "Retrieves a specific collateral by its unique identifier")
@@ -64,7 +85,7 @@ public class CollateralController {
     @GetMapping("/{collateralId}")
     public Mono<ResponseEntity<Collateral>> getCollateral(
             @Parameter(description = "Unique identifier of the collateral", required = true) @PathVariable String collateralId) {
-        log.info("REST request to get collateral: {}", collateralId);
+        log.debug("REST request to get collateral: {}", collateralId);
 
         return collateralService.getCollateralById(collateralId)
                 .map(collateral -> ResponseEntity.ok().body(collateral))
@@ -81,7 +102,7 @@ public class CollateralController {
     public Mono<ResponseEntity<Collateral>> updateCollateral(
             @Parameter(description = "Unique identifier of the collateral to update", required = true) @PathVariable String collateralId,
             @Parameter(description = "Updated collateral information", required = true) @RequestBody Collateral collateral) {
-        log.info("REST request to update collateral: {}", collateralId);
+        log.debug("REST request to update collateral: {}", collateralId);
 
         return collateralService.updateCollateral(collateralId, collateral)
                 .map(updated -> ResponseEntity.ok().body(updated))
@@ -96,7 +117,7 @@ public class CollateralController {
     @DeleteMapping("/{collateralId}")
     public Mono<ResponseEntity<Void>> deleteCollateral(
             @Parameter(description = "Unique identifier of the collateral to delete", required = true) @PathVariable String collateralId) {
-        log.info("REST request to delete collateral: {}", collateralId);
+        log.debug("REST request to delete collateral: {}", collateralId);
 
         return collateralService.deleteCollateral(collateralId)
                 .then(Mono.just(ResponseEntity.noContent().<Void>build()))
@@ -110,10 +131,24 @@ public class CollateralController {
     @GetMapping("/customer/{customerId}")
     public Flux<Collateral> getCollateralsByCustomer(
             @Parameter(description = "Unique identifier of the customer", required = true) @PathVariable String customerId) {
-        log.info("REST request to get collaterals for customer: {}", customerId);
+        log.debug("REST request to get collaterals for customer: {}", customerId);
         return collateralService.getCollateralsByCustomerId(customerId);
     }
 
+    @Operation(summary = "Get customer exposure", description = "Returns the customer's total market, encumbered and available value, active encumbrances and a per-type breakdown, aggregated in one query over collateral that is not rejected, released, liquidated, expired or inactive")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Exposure summary for the customer", content = @Content(mediaType = "application/json", schema = @Schema(implementation = CustomerExposure.class)))
+    })
+    @GetMapping("/customer/{customerId}/exposure")
+    public Mono<CustomerExposure> getCustomerExposure(
+            @Parameter(description = "Unique identifier of the customer", required = true) @PathVariable String customerId,
+            @Parameter(description = "Serve from the exposure cache, which may trail writes by up to collateral.exposure.expire-after-write") @RequestParam(defaultValue = "false") boolean cached) {
+        log.debug("REST request to get exposure for customer: {} (cached: {})", customerId, cached);
+        return cached
+                ? customerExposureService.getCachedExposure(customerId)
+                : customerExposureService.getExposure(customerId);
+    }
+
     @Operation(summary = "Get collaterals by account", description = "Retrieves all collaterals associated with a specific account")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "List of collaterals for the account", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Collateral.class)))
@@ -121,7 +156,7 @@ public class CollateralController {
     @GetMapping("/account/{accountId}")
     public Flux<Collateral> getCollateralsByAccount(
             @Parameter(description = "Unique identifier of the account", required = true) @PathVariable String accountId) {
-        log.info("REST request to get collaterals for account: {}", accountId);
+        log.debug("REST request to get collaterals for account: {}", accountId);
         return collateralService.getCollateralsByAccountId(accountId);
     }
 
@@ -132,7 +167,7 @@ public class CollateralController {
     @GetMapping("/status/{status}")
     public Flux<Collateral> getCollateralsByStatus(
             @Parameter(description = "Status of collaterals to retrieve", required = true) @PathVariable CollateralStatus status) {
-        log.info("REST request to get collaterals by status: {}", status);
+        log.debug("REST request to get collaterals by status: {}", status);
         return collateralService.getCollateralsByStatus(status);
     }
 
@@ -144,18 +179,31 @@ public class CollateralController {
     public Flux<Collateral> getAvailableCollaterals(
             @Parameter(description = "Unique identifier of the customer", required = true) @PathVariable String customerId,
             @Parameter(description = "Minimum market value filter (defaults to 0)") @RequestParam(defaultValue = "0") BigDecimal minValue) {
-        log.info("REST request to get available collaterals for customer: {} with min value: {}", customerId, minValue);
+        log.debug("REST request to get available collaterals for customer: {} with min value: {}", customerId, minValue);
         return collateralService.getAvailableCollaterals(customerId, minValue);
     }
 
-    @Operation(summary = "Get encumbered collaterals", description = "Retrieves all collaterals that are currently encumbered (pledged as security)")
+    @Operation(summary = "Get encumbered collaterals", description = "Retrieves one page of collaterals that are currently encumbered (pledged as security), ordered by id")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Page of encumbered collaterals", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Collateral.class)))
+    })
+    @GetMapping(value = "/encumbered", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<Collateral> getEncumberedCollaterals(
+            @Parameter(description = "Return rows with an id greater than this cursor; pass the id of the last row of the previous page") @RequestParam(required = false) Long afterId,
+            @Parameter(description = "Maximum number of rows to return (default 100, capped at 1000)") @RequestParam(required = false) Integer limit) {
+        log.debug("REST request to get encumbered collaterals after id: {}", afterId);
+        return collateralService.getEncumberedCollaterals(afterId, limit);
+    }
+
+    @Operation(summary = "Stream encumbered collaterals", description = "Streams all encumbered collaterals as newline-delimited JSON, fetched page by page as the client consumes them")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "List of all encumbered collaterals", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Collateral.class)))
+            @ApiResponse(responseCode = "200", description = "Stream of encumbered collaterals", content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = Collateral.class)))
     })
-    @GetMapping("/encumbered")
-    public Flux<Collateral> getEncumberedCollaterals() {
-        log.info("REST request to get all encumbered collaterals");
-        return collateralService.getEncumberedCollaterals();
+    @GetMapping(value = "/encumbered", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Collateral> streamEncumberedCollaterals(
+            @Parameter(description = "Start streaming after this id") @RequestParam(required = false) Long afterId) {
+        log.debug("REST request to stream encumbered collaterals");
+        return collateralService.streamEncumberedCollaterals(afterId);
     }
 
     @Operation(summary = "Update collateral value", description = "Updates the market value of a specific collateral asset")
@@ -168,7 +216,7 @@ public class CollateralController {
     public Mono<ResponseEntity<Collateral>> updateCollateralValue(
             @Parameter(description = "Unique identifier of the collateral", required = true) @PathVariable String collateralId,
             @Parameter(description = "New market value information", required = true) @RequestBody UpdateValueRequest request) {
-        log.info("REST request to update value for collateral: {} to {}", collateralId, request.getMarketValue());
+        log.debug("REST request to update value for collateral: {} to {}", collateralId, request.getMarketValue());
 
         return collateralService.updateCollateralValue(collateralId, request.getMarketValue())
                 .map(updated -> ResponseEntity.ok().body(updated))
@@ -181,7 +229,7 @@ public class CollateralController {
     })
     @GetMapping("/types")
     public Mono<ResponseEntity<CollateralType[]>> getCollateralTypes() {
-        log.info("REST request to get all collateral types");
+        log.debug("REST request to get all collateral types");
         return Mono.just(ResponseEntity.ok().body(CollateralType.values()));
     }
 
@@ -191,7 +239,7 @@ public class CollateralController {
     })
     @GetMapping("/statuses")
     public Mono<ResponseEntity<CollateralStatus[]>> getCollateralStatuses() {
-        log.info("REST request to get all collateral statuses");
+        log.debug("REST request to get all collateral statuses");
         return Mono.just(ResponseEntity.ok().body(CollateralStatus.values()));
     }
 
@@ -205,7 +253,7 @@ public class CollateralController {
     @PostMapping("/create-with-validation")
     public Mono<ResponseEntity<Collateral>> createCollateralWithValidation(
             @Parameter(description = "Collateral details to create with validation", required = true) @RequestBody Collateral collateral) {
-        log.info("REST request to create collateral with validation for customer: {}", collateral.getCustomerId());
+        log.debug("REST request to create collateral with validation for customer: {}", collateral.getCustomerId());
 
         return collateralService.createCollateralWithValidation(collateral)
                 .map(created -> ResponseEntity.status(HttpStatus.CREATED).body(created))
@@ -1,5 +1,6 @@
 package com.rjtmahinay.collateral.controller;
 
+import com.rjtmahinay.collateral.dto.BulkDto.BulkItemResult;
 import com.rjtmahinay.collateral.model.Encumbrance;
 import com.rjtmahinay.collateral.model.EncumbranceStatus;
 import com.rjtmahinay.collateral.model.EncumbranceType;
@@ -15,6 +16,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
@@ -30,20 +32,36 @@ import java.math.BigDecimal;
 public class EncumbranceController {
 
         private final EncumbranceService encumbranceService;
+        private final IdempotencyStore idempotencyStore;
 
         @Operation(summary = "Create a new encumbrance", description = "Creates a new encumbrance on a collateral asset")
         @ApiResponses(value = {
                         @ApiResponse(responseCode = "201", description = "Encumbrance created successfully", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Encumbrance.class))),
-                        @ApiResponse(responseCode = "400", description = "Invalid input data")
+                        @ApiResponse(responseCode = "400", description = "Invalid input data"),
+                        @ApiResponse(responseCode = "422", description = "Idempotency key already used for a different request")
         })
         @PostMapping
         public Mono<ResponseEntity<Encumbrance>> createEncumbrance(
-                        @Parameter(description = "Encumbrance details to create", required = true) @RequestBody Encumbrance encumbrance) {
-                log.info("REST request to create encumbrance for collateral: {}", encumbrance.getCollateralId());
+                        @Parameter(description = "Encumbrance details to create", required = true) @RequestBody Encumbrance encumbrance,
+                        @Parameter(description = "Client-chosen key; a retry with the same key returns the original response instead of creating another encumbrance") @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+                log.debug("REST request to create encumbrance for collateral: {}", encumbrance.getCollateralId());
+
+                return idempotencyStore.execute("encumbrance", idempotencyKey, encumbrance,
+                                () -> encumbranceService.createEncumbrance(encumbrance)
+                                                .map(created -> ResponseEntity.status(HttpStatus.CREATED).body(created))
+                                                .onErrorReturn(ResponseEntity.status(HttpStatus.BAD_REQUEST).build()));
+        }
+
+        @Operation(summary = "Bulk create encumbrances", description = "Posts a stream of newline-delimited JSON encumbrances with batched inserts and one balance adjustment per collateral, streaming back one result per record")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Per-record posting results", content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = BulkItemResult.class)))
+        })
+        @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+        public Flux<BulkItemResult> createEncumbrances(
+                        @Parameter(description = "Newline-delimited JSON stream of encumbrances to create", required = true) @RequestBody Flux<Encumbrance> encumbrances) {
+                log.debug("REST request to bulk create encumbrances");
 
-                return encumbranceService.createEncumbrance(encumbrance)
-                                .map(created -> ResponseEntity.status(HttpStatus.CREATED).body(created))
-                                .onErrorReturn(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+                return encumbranceService.createEncumbrances(encumbrances);
         }
 
         @Operation(summary = "Get encumbrance by ID", description = "Retrieves a specific encumbrance by its unique identifier")
@@ -54,7 +72,7 @@ public class EncumbranceController {
         @GetMapping("/{encumbranceId}")
         public Mono<ResponseEntity<Encumbrance>> getEncumbrance(
                         @Parameter(description = "Unique identifier of the encumbrance", required = true) @PathVariable String encumbranceId) {
-                log.info("REST request to get encumbrance: {}", encumbranceId);
+                log.debug("REST request to get encumbrance: {}", encumbranceId);
 
                 return encumbranceService.getEncumbranceById(encumbranceId)
                                 .map(encumbrance -> ResponseEntity.ok().body(encumbrance))
@@ -71,7 +89,7 @@ public class EncumbranceController {
         public Mono<ResponseEntity<Encumbrance>> updateEncumbrance(
                         @Parameter(description = "Unique identifier of the encumbrance to update", required = true) @PathVariable String encumbranceId,
                         @Parameter(description = "Updated encumbrance information", required = true) @RequestBody Encumbrance encumbrance) {
-                log.info("REST request to update encumbrance: {}", encumbranceId);
+                log.debug("REST request to update encumbrance: {}", encumbranceId);
 
                 return encumbranceService.updateEncumbrance(encumbranceId, encumbrance)
                                 .map(updated -> ResponseEntity.ok().body(updated))
@@ -86,7 +104,7 @@ public class EncumbranceController {
         @DeleteMapping("/{encumbranceId}")
         public Mono<ResponseEntity<Void>> deleteEncumbrance(
                         @Parameter(description = "Unique identifier of the encumbrance to delete", required = true) @PathVariable String encumbranceId) {
-                log.info("REST request to delete encumbrance: {}", encumbranceId);
+                log.debug("REST request to delete encumbrance: {}", encumbranceId);
 
                 return encumbranceService.deleteEncumbrance(encumbranceId)
                                 .then(Mono.just(ResponseEntity.noContent().<Void>build()))
@@ -100,7 +118,7 @@ public class EncumbranceController {
         @GetMapping("/collateral/{collateralId}")
         public Flux<Encumbrance> getEncumbrancesByCollateral(
                         @Parameter(description = "Unique identifier of the collateral", required = true) @PathVariable String collateralId) {
-                log.info("REST request to get encumbrances for collateral: {}", collateralId);
+                log.debug("REST request to get encumbrances for collateral: {}", collateralId);
                 return encumbranceService.getEncumbrancesByCollateralId(collateralId);
         }
 
@@ -111,7 +129,7 @@ public class EncumbranceController {
         @GetMapping("/collateral/{collateralId}/active")
         public Flux<Encumbrance> getActiveEncumbrancesByCollateral(
                         @Parameter(description = "Unique identifier of the collateral", required = true) @PathVariable String collateralId) {
-                log.info("REST request to get active encumbrances for collateral: {}", collateralId);
+                log.debug("REST request to get active encumbrances for collateral: {}", collateralId);
                 return encumbranceService.getActiveEncumbrancesByCollateral(collateralId);
         }
 
@@ -122,7 +140,7 @@ public class EncumbranceController {
         @GetMapping("/loan/{loanId}")
         public Flux<Encumbrance> getEncumbrancesByLoan(
                         @Parameter(description = "Unique identifier of the loan", required = true) @PathVariable String loanId) {
-                log.info("REST request to get encumbrances for loan: {}", loanId);
+                log.debug("REST request to get encumbrances for loan: {}", loanId);
                 return encumbranceService.getEncumbrancesByLoanId(loanId);
         }
 
@@ -133,19 +151,33 @@ public class EncumbranceController {
         @GetMapping("/customer/{customerId}")
         public Flux<Encumbrance> getEncumbrancesByCustomer(
                         @Parameter(description = "Unique identifier of the customer", required = true) @PathVariable String customerId) {
-                log.info("REST request to get encumbrances for customer: {}", customerId);
+                log.debug("REST request to get encumbrances for customer: {}", customerId);
                 return encumbranceService.getEncumbrancesByCustomerId(customerId);
         }
 
-        @Operation(summary = "Get encumbrances by status", description = "Retrieves all encumbrances with a specific status (ACTIVE, RELEASED, EXPIRED, etc.)")
+        @Operation(summary = "Get encumbrances by status", description = "Retrieves one page of encumbrances with a specific status (ACTIVE, RELEASED, EXPIRED, etc.), ordered by id")
         @ApiResponses(value = {
-                        @ApiResponse(responseCode = "200", description = "List of encumbrances with the specified status", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Encumbrance.class)))
+                        @ApiResponse(responseCode = "200", description = "Page of encumbrances with the specified status", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Encumbrance.class)))
         })
-        @GetMapping("/status/{status}")
+        @GetMapping(value = "/status/{status}", produces = MediaType.APPLICATION_JSON_VALUE)
         public Flux<Encumbrance> getEncumbrancesByStatus(
-                        @Parameter(description = "Status of encumbrances to retrieve", required = true) @PathVariable EncumbranceStatus status) {
-                log.info("REST request to get encumbrances by status: {}", status);
-                return encumbranceService.getEncumbrancesByStatus(status);
+                        @Parameter(description = "Status of encumbrances to retrieve", required = true) @PathVariable EncumbranceStatus status,
+                        @Parameter(description = "Return rows with an id greater than this cursor; pass the id of the last row of the previous page") @RequestParam(required = false) Long afterId,
+                        @Parameter(description = "Maximum number of rows to return (default 100, capped at 1000)") @RequestParam(required = false) Integer limit) {
+                log.debug("REST request to get encumbrances by status: {} after id: {}", status, afterId);
+                return encumbranceService.getEncumbrancesByStatus(status, afterId, limit);
+        }
+
+        @Operation(summary = "Stream encumbrances by status", description = "Streams all encumbrances with a specific status as newline-delimited JSON, fetched page by page as the client consumes them")
+        @ApiResponses(value = {
+                        @ApiResponse(responseCode = "200", description = "Stream of encumbrances with the specified status", content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = Encumbrance.class)))
+        })
+        @GetMapping(value = "/status/{status}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+        public Flux<Encumbrance> streamEncumbrancesByStatus(
+                        @Parameter(description = "Status of encumbrances to retrieve", required = true) @PathVariable EncumbranceStatus status,
+                        @Parameter(description = "Start streaming after this id") @RequestParam(required = false) Long afterId) {
+                log.debug("REST request to stream encumbrances by status: {}", status);
+                return encumbranceService.streamEncumbrancesByStatus(status, afterId);
         }
 
         @Operation(summary = "Get expired encumbrances", description = "Retrieves all encumbrances that have passed their expiration date")
@@ -154,7 +186,7 @@ public class EncumbranceController {
         })
         @GetMapping("/expired")
         public Flux<Encumbrance> getExpiredEncumbrances() {
-                log.info("REST request to get expired encumbrances");
+                log.debug("REST request to get expired encumbrances");
                 return encumbranceService.getExpiredEncumbrances();
         }
 
@@ -165,7 +197,7 @@ public class EncumbranceController {
         @GetMapping("/collateral/{collateralId}/total-amount")
         public Mono<ResponseEntity<BigDecimal>> getTotalEncumberedAmount(
                         @Parameter(description = "Unique identifier of the collateral", required = true) @PathVariable String collateralId) {
-                log.info("REST request to get total encumbered amount for collateral: {}", collateralId);
+                log.debug("REST request to get total encumbered amount for collateral: {}", collateralId);
 
                 return encumbranceService.getTotalEncumberedAmount(collateralId)
                                 .map(total -> ResponseEntity.ok().body(total));
@@ -181,7 +213,7 @@ public class EncumbranceController {
         public Mono<ResponseEntity<Encumbrance>> releaseEncumbrance(
                         @Parameter(description = "Unique identifier of the encumbrance to release", required = true) @PathVariable String encumbranceId,
                         @Parameter(description = "Release request details", required = true) @RequestBody ReleaseRequest request) {
-                log.info("REST request to release encumbrance: {}", encumbranceId);
+                log.debug("REST request to release encumbrance: {}", encumbranceId);
 
                 return encumbranceService.releaseEncumbrance(encumbranceId, request.getReleasedBy())
                                 .map(released -> ResponseEntity.ok().body(released))
@@ -198,7 +230,7 @@ public class EncumbranceController {
         public Mono<ResponseEntity<Encumbrance>> partiallyReleaseEncumbrance(
                         @Parameter(description = "Unique identifier of the encumbrance to partially release", required = true) @PathVariable String encumbranceId,
                         @Parameter(description = "Partial release request details", required = true) @RequestBody PartialReleaseRequest request) {
-                log.info("REST request to partially release encumbrance: {} with amount: {}",
+                log.debug("REST request to partially release encumbrance: {} with amount: {}",
                                 encumbranceId, request.getReleaseAmount());
 
                 return encumbranceService.partiallyReleaseEncumbrance(
@@ -209,14 +241,14 @@ public class EncumbranceController {
                                 .onErrorReturn(ResponseEntity.notFound().build());
         }
 
-        @Operation(summary = "Process expired encumbrances", description = "Processes and marks encumbrances as expired based on their expiration dates")
+        @Operation(summary = "Process expired encumbrances", description = "Marks encumbrances past their expiration date as expired, in chunks, and releases their amounts from the collateral balances")
         @ApiResponses(value = {
                         @ApiResponse(responseCode = "200", description = "Expired encumbrances processed successfully"),
                         @ApiResponse(responseCode = "500", description = "Error processing expired encumbrances")
         })
         @PostMapping("/expire-encumbrances")
         public Mono<ResponseEntity<Void>> expireEncumbrances() {
-                log.info("REST request to process expired encumbrances");
+                log.debug("REST request to process expired encumbrances");
 
                 return encumbranceService.expireEncumbrances()
                                 .then(Mono.just(ResponseEntity.ok().<Void>build()));
@@ -228,7 +260,7 @@ public class EncumbranceController {
         })
         @GetMapping("/types")
         public Mono<ResponseEntity<EncumbranceType[]>> getEncumbranceTypes() {
-                log.info("REST request to get all encumbrance types");
+                log.debug("REST request to get all encumbrance types");
                 return Mono.just(ResponseEntity.ok().body(EncumbranceType.values()));
         }
 
@@ -238,7 +270,7 @@ public class EncumbranceController {
         })
         @GetMapping("/statuses")
         public Mono<ResponseEntity<EncumbranceStatus[]>> getEncumbranceStatuses() {
-                log.info("REST request to get all encumbrance statuses");
+                log.debug("REST request to get all encumbrance statuses");
                 return Mono.just(ResponseEntity.ok().body(EncumbranceStatus.values()));
         }
 
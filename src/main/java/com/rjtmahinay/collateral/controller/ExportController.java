@@ -0,0 +1,97 @@
+package com.rjtmahinay.collateral.controller;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.rjtmahinay.collateral.dto.ExportPartition;
+import com.rjtmahinay.collateral.service.ExportTable;
+import com.rjtmahinay.collateral.service.SnapshotExportService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+@RestController
+@RequestMapping("/api/v1/exports")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Snapshot Export", description = "APIs for downloading consistent CSV snapshots of the collateral, encumbrance and auto valuation tables")
+public class ExportController {
+
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
+    private final SnapshotExportService snapshotExportService;
+
+    @Operation(summary = "Export collaterals", description = "Streams a consistent snapshot of the collateral table as CSV, optionally limited to one type and/or status partition")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "CSV snapshot with a header line", content = @Content(mediaType = "text/csv"))
+    })
+    @GetMapping(value = "/collaterals.csv", produces = "text/csv")
+    public ResponseEntity<Flux<DataBuffer>> exportCollaterals(
+            @Parameter(description = "Only export this collateral type") @RequestParam(required = false) String type,
+            @Parameter(description = "Only export this collateral status") @RequestParam(required = false) String status) {
+        log.debug("REST request to export collaterals (type: {}, status: {})", type, status);
+        return download(ExportTable.COLLATERAL, type, status);
+    }
+
+    @Operation(summary = "Export encumbrances", description = "Streams a consistent snapshot of the encumbrance table as CSV, optionally limited to one type and/or status partition")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "CSV snapshot with a header line", content = @Content(mediaType = "text/csv"))
+    })
+    @GetMapping(value = "/encumbrances.csv", produces = "text/csv")
+    public ResponseEntity<Flux<DataBuffer>> exportEncumbrances(
+            @Parameter(description = "Only export this encumbrance type") @RequestParam(required = false) String type,
+            @Parameter(description = "Only export this encumbrance status") @RequestParam(required = false) String status) {
+        log.debug("REST request to export encumbrances (type: {}, status: {})", type, status);
+        return download(ExportTable.ENCUMBRANCE, type, status);
+    }
+
+    @Operation(summary = "Export auto valuations", description = "Streams a consistent snapshot of the auto valuation table as CSV, optionally limited to one type and/or status partition")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "CSV snapshot with a header line", content = @Content(mediaType = "text/csv"))
+    })
+    @GetMapping(value = "/auto-valuations.csv", produces = "text/csv")
+    public ResponseEntity<Flux<DataBuffer>> exportAutoValuations(
+            @Parameter(description = "Only export this collateral type") @RequestParam(required = false) String type,
+            @Parameter(description = "Only export this valuation status") @RequestParam(required = false) String status) {
+        log.debug("REST request to export auto valuations (type: {}, status: {})", type, status);
+        return download(ExportTable.AUTO_VALUATION, type, status);
+    }
+
+    @Operation(summary = "Get export partitions", description = "Returns the row count of every type and status partition of a table, for splitting a large export into parallel downloads")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Row count per partition", content = @Content(mediaType = "application/json", schema = @Schema(implementation = ExportPartition.class)))
+    })
+    @GetMapping("/partitions")
+    public Flux<ExportPartition> getPartitions(
+            @Parameter(description = "Table to partition", required = true) @RequestParam ExportTable table) {
+        log.debug("REST request to get export partitions of {}", table);
+        return snapshotExportService.getPartitions(table);
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> download(ExportTable table, String type, String status) {
+        String filename = table.getTableName()
+                + (type != null ? "-" + type : "")
+                + (status != null ? "-" + status : "")
+                + ".csv";
+        return ResponseEntity.ok()
+                .contentType(TEXT_CSV)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename).build().toString())
+                .body(snapshotExportService.exportCsv(table, type, status));
+    }
+}
@@ -0,0 +1,95 @@
+package com.rjtmahinay.collateral.controller;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rjtmahinay.collateral.config.CollateralProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Remembers the successful response of a create request under its {@code Idempotency-Key} so a retried request
+ * gets the original response back instead of creating another row. A retry that arrives while the original is
+ * still running waits for it rather than running again. Error responses are not kept, so a failed request can be
+ * retried with the same key.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private final AsyncCache<String, StoredResponse> cache;
+
+    public IdempotencyStore(CollateralProperties properties, MeterRegistry meterRegistry) {
+        CollateralProperties.Idempotency config = properties.getIdempotency();
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getExpireAfterWrite())
+                .recordStats()
+                .<String, StoredResponse>buildAsync(), "idempotency");
+    }
+
+    /**
+     * Runs {@code operation} once per {@code scope} and key, or right away when no key is given. Reusing a key
+     * with a different request body is answered with 422 Unprocessable Entity.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<ResponseEntity<T>> execute(String scope, String idempotencyKey, Object request,
+            Supplier<Mono<ResponseEntity<T>>> operation) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return Mono.defer(operation);
+        }
+        String key = scope + ":" + idempotencyKey;
+        // Taken before the operation runs, since the services fill in ids and timestamps on the request
+        int fingerprint = Objects.hashCode(request);
+
+        return Mono.defer(() -> {
+            AtomicBoolean executed = new AtomicBoolean();
+            CompletableFuture<StoredResponse> future = cache.get(key, (k, executor) -> {
+                executed.set(true);
+                return operation.get()
+                        .map(response -> new StoredResponse(fingerprint, response))
+                        .toFuture();
+            });
+
+            // Not cancelled with the caller: a disconnected client must not abort a write its retry will wait on
+            return Mono.fromFuture(future, true)
+                    .doOnNext(stored -> {
+                        if (!stored.response().getStatusCode().is2xxSuccessful()) {
+                            cache.asMap().remove(key, future);
+                        }
+                    })
+                    .map(stored -> {
+                        if (stored.fingerprint() != fingerprint) {
+                            log.warn("Idempotency key {} reused with a different request", key);
+                            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).<T>build();
+                        }
+                        ResponseEntity<T> response = (ResponseEntity<T>) stored.response();
+                        if (executed.get()) {
+                            return response;
+                        }
+                        log.debug("Replaying stored response for idempotency key {}", key);
+                        return ResponseEntity.status(response.getStatusCode())
+                                .headers(response.getHeaders())
+                                .header(REPLAYED_HEADER, "true")
+                                .body(response.getBody());
+                    });
+        });
+    }
+
+    private record StoredResponse(int fingerprint, ResponseEntity<?> response) {
+    }
+}
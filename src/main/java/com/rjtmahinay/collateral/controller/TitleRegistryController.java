@@ -2,6 +2,7 @@ package com.rjtmahinay.collateral.controller;
 
 import com.rjtmahinay.collateral.model.TitleRegistry;
 import com.rjtmahinay.collateral.repository.TitleRegistryRepository;
+import com.rjtmahinay.collateral.service.KeysetPaginator;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -12,6 +13,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
@@ -28,6 +30,7 @@ import java.util.UUID;
 public class TitleRegistryController {
 
     private final TitleRegistryRepository titleRegistryRepository;
+    private final KeysetPaginator keysetPaginator;
 
     @Operation(summary = "Create a new title registry record", description = "Creates a new title registry record")
     @ApiResponses(value = {
@@ -37,7 +40,7 @@ public class TitleRegistryController {
     @PostMapping
     public Mono<ResponseEntity<TitleRegistry>> createTitleRegistry(
             @Parameter(description = "Title registry details to create", required = true) @RequestBody TitleRegistry titleRegistry) {
-        log.info("REST request to create title registry for collateral: {}", titleRegistry.getCollateralId());
+        log.debug("REST request to create title registry for collateral: {}", titleRegistry.getCollateralId());
 
         titleRegistry.setTitleId(UUID.randomUUID().toString());
         titleRegistry.setCreatedAt(LocalDateTime.now());
@@ -56,7 +59,7 @@ public class TitleRegistryController {
     @GetMapping("/{titleId}")
     public Mono<ResponseEntity<TitleRegistry>> getTitleRegistry(
             @Parameter(description = "Unique identifier of the title registry record", required = true) @PathVariable String titleId) {
-        log.info("REST request to get title registry: {}", titleId);
+        log.debug("REST request to get title registry: {}", titleId);
 
         return titleRegistryRepository.findByTitleId(titleId)
                 .map(title -> ResponseEntity.ok().body(title))
@@ -73,7 +76,7 @@ public class TitleRegistryController {
     public Mono<ResponseEntity<TitleRegistry>> updateTitleRegistry(
             @Parameter(description = "Unique identifier of the title registry record to update", required = true) @PathVariable String titleId,
             @Parameter(description = "Updated title registry information", required = true) @RequestBody TitleRegistry titleRegistry) {
-        log.info("REST request to update title registry: {}", titleId);
+        log.debug("REST request to update title registry: {}", titleId);
 
         return titleRegistryRepository.findByTitleId(titleId)
                 .flatMap(existing -> {
@@ -95,7 +98,7 @@ public class TitleRegistryController {
     @DeleteMapping("/{titleId}")
     public Mono<ResponseEntity<Void>> deleteTitleRegistry(
             @Parameter(description = "Unique identifier of the title registry record to delete", required = true) @PathVariable String titleId) {
-        log.info("REST request to delete title registry: {}", titleId);
+        log.debug("REST request to delete title registry: {}", titleId);
 
         return titleRegistryRepository.findByTitleId(titleId)
                 .flatMap(existing -> titleRegistryRepository.deleteById(existing.getId()))
@@ -111,7 +114,7 @@ public class TitleRegistryController {
     @GetMapping("/title-number/{titleNumber}")
     public Mono<ResponseEntity<TitleRegistry>> getTitleRegistryByTitleNumber(
             @Parameter(description = "Title number", required = true) @PathVariable String titleNumber) {
-        log.info("REST request to get title registry by title number: {}", titleNumber);
+        log.debug("REST request to get title registry by title number: {}", titleNumber);
 
         return titleRegistryRepository.findByTitleNumber(titleNumber)
                 .map(title -> ResponseEntity.ok().body(title))
@@ -125,7 +128,7 @@ public class TitleRegistryController {
     @GetMapping("/collateral/{collateralId}")
     public Flux<TitleRegistry> getTitleRegistriesByCollateral(
             @Parameter(description = "Unique identifier of the collateral", required = true) @PathVariable String collateralId) {
-        log.info("REST request to get title registry records for collateral: {}", collateralId);
+        log.debug("REST request to get title registry records for collateral: {}", collateralId);
         return titleRegistryRepository.findByCollateralId(collateralId);
     }
 
@@ -136,7 +139,7 @@ public class TitleRegistryController {
     @GetMapping("/owner/{owner}")
     public Flux<TitleRegistry> getTitleRegistriesByOwner(
             @Parameter(description = "Current owner name", required = true) @PathVariable String owner) {
-        log.info("REST request to get title registry records for owner: {}", owner);
+        log.debug("REST request to get title registry records for owner: {}", owner);
         return titleRegistryRepository.findByCurrentOwner(owner);
     }
 
@@ -147,7 +150,7 @@ public class TitleRegistryController {
     @GetMapping("/status/{status}")
     public Flux<TitleRegistry> getTitleRegistriesByStatus(
             @Parameter(description = "Title status", required = true) @PathVariable TitleRegistry.TitleStatus status) {
-        log.info("REST request to get title registry records by status: {}", status);
+        log.debug("REST request to get title registry records by status: {}", status);
         return titleRegistryRepository.findByStatus(status);
     }
 
@@ -159,7 +162,7 @@ public class TitleRegistryController {
     @GetMapping("/collateral/{collateralId}/latest")
     public Mono<ResponseEntity<TitleRegistry>> getLatestTitleRegistryByCollateral(
             @Parameter(description = "Unique identifier of the collateral", required = true) @PathVariable String collateralId) {
-        log.info("REST request to get latest title registry for collateral: {}", collateralId);
+        log.debug("REST request to get latest title registry for collateral: {}", collateralId);
 
         return titleRegistryRepository.findLatestByCollateralId(collateralId)
                 .map(title -> ResponseEntity.ok().body(title))
@@ -173,18 +176,32 @@ public class TitleRegistryController {
     @GetMapping("/owner/{owner}/verified")
     public Flux<TitleRegistry> getVerifiedTitlesByOwner(
             @Parameter(description = "Owner name", required = true) @PathVariable String owner) {
-        log.info("REST request to get verified titles for owner: {}", owner);
+        log.debug("REST request to get verified titles for owner: {}", owner);
         return titleRegistryRepository.findVerifiedTitlesByOwner(owner);
     }
 
-    @Operation(summary = "Get all valid titles", description = "Retrieves all valid and verified title registry records")
+    @Operation(summary = "Get valid titles", description = "Retrieves one page of valid and verified title registry records, ordered by id")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "List of all valid title registry records", content = @Content(mediaType = "application/json", schema = @Schema(implementation = TitleRegistry.class)))
+            @ApiResponse(responseCode = "200", description = "Page of valid title registry records", content = @Content(mediaType = "application/json", schema = @Schema(implementation = TitleRegistry.class)))
     })
-    @GetMapping("/valid")
-    public Flux<TitleRegistry> getAllValidTitles() {
-        log.info("REST request to get all valid titles");
-        return titleRegistryRepository.findAllValidTitles();
+    @GetMapping(value = "/valid", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<TitleRegistry> getAllValidTitles(
+            @Parameter(description = "Return rows with an id greater than this cursor; pass the id of the last row of the previous page") @RequestParam(required = false) Long afterId,
+            @Parameter(description = "Maximum number of rows to return (default 100, capped at 1000)") @RequestParam(required = false) Integer limit) {
+        log.debug("REST request to get valid titles after id: {}", afterId);
+        return titleRegistryRepository.findAllValidTitlesAfter(keysetPaginator.afterId(afterId),
+                keysetPaginator.limit(limit));
+    }
+
+    @Operation(summary = "Stream valid titles", description = "Streams all valid and verified title registry records as newline-delimited JSON, fetched page by page as the client consumes them")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stream of valid title registry records", content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = TitleRegistry.class)))
+    })
+    @GetMapping(value = "/valid", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<TitleRegistry> streamValidTitles(
+            @Parameter(description = "Start streaming after this id") @RequestParam(required = false) Long afterId) {
+        log.debug("REST request to stream valid titles");
+        return keysetPaginator.stream(afterId, titleRegistryRepository::findAllValidTitlesAfter, TitleRegistry::getId);
     }
 
     @Operation(summary = "Get all title statuses", description = "Retrieves all available title status values")
@@ -193,7 +210,7 @@ public class TitleRegistryController {
     })
     @GetMapping("/statuses")
     public Mono<ResponseEntity<TitleRegistry.TitleStatus[]>> getTitleStatuses() {
-        log.info("REST request to get all title statuses");
+        log.debug("REST request to get all title statuses");
         return Mono.just(ResponseEntity.ok().body(TitleRegistry.TitleStatus.values()));
     }
 }
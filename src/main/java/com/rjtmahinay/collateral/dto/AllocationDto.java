@@ -0,0 +1,78 @@
+package com.rjtmahinay.collateral.dto;
+
+import com.rjtmahinay.collateral.model.CollateralType;
+import com.rjtmahinay.collateral.model.Encumbrance;
+import com.rjtmahinay.collateral.model.EncumbranceType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class AllocationDto {
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AllocationRequest {
+        private String customerId;
+        private String loanId;
+        private BigDecimal loanAmount;
+        // Only collateral in this currency is pledged; defaults to USD
+        private String currency;
+        // Defaults to LIEN
+        private EncumbranceType encumbranceType;
+        // Can only tighten collateral.allocation.max-ltv
+        private BigDecimal maxLtv;
+        // Most junior lien accepted; 1 pledges unencumbered collateral only
+        private Integer maxLienRank;
+        private LocalDateTime effectiveDate;
+        private LocalDateTime expiryDate;
+        private String createdBy;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Pledge {
+        private String collateralId;
+        private CollateralType type;
+        private BigDecimal availableValue;
+        private BigDecimal haircut;
+        // Priority of the encumbrance this pledge posts
+        private Integer lienRank;
+        // Encumbrance amount
+        private BigDecimal amount;
+        // Part of the amount that counts towards the loan after the haircut
+        private BigDecimal lendingValue;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AllocationResult {
+        private String customerId;
+        private String loanId;
+        private BigDecimal loanAmount;
+        private BigDecimal maxLtv;
+        // Haircut value the pledges must cover: loanAmount / maxLtv
+        private BigDecimal requiredValue;
+        private BigDecimal allocatedValue;
+        private BigDecimal pledgedAmount;
+        private Integer candidateCount;
+        private Integer searchNodes;
+        // False when the search budget ran out before every alternative was ruled out
+        private Boolean optimal;
+        private String status;
+        private String message;
+        private List<Pledge> pledges;
+        // Only set once the pledges have been posted
+        private List<Encumbrance> encumbrances;
+    }
+}
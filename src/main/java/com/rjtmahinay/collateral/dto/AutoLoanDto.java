@@ -58,7 +58,11 @@ public class AutoLoanDto {
         private String zipCode;
         private String status;
         private String message;
+        private Long sampleCount;
         private BigDecimal averageMarketValue;
+        private BigDecimal minMarketValue;
+        private BigDecimal maxMarketValue;
+        private BigDecimal medianMarketValue;
         private Double priceChangePercent;
         private String demandLevel;
         private Integer averageDaysOnMarket;
@@ -149,6 +153,10 @@ public class AutoLoanDto {
         private String model;
         private BigDecimal currentValue;
         private Integer forecastMonths;
+        // Return every Nth month (plus the final month); defaults to every month
+        private Integer sampleInterval;
+        // Return only the final month
+        private Boolean summaryOnly;
     }
 
     @Data
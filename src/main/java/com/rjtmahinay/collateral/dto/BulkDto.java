@@ -0,0 +1,29 @@
+package com.rjtmahinay.collateral.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+public class BulkDto {
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BulkItemResult {
+        // Zero-based position of the record in the request stream
+        private Long index;
+        private String id;
+        private String status;
+        private String message;
+
+        public static BulkItemResult success(long index, String id) {
+            return BulkItemResult.builder().index(index).id(id).status("SUCCESS").build();
+        }
+
+        public static BulkItemResult error(long index, String message) {
+            return BulkItemResult.builder().index(index).status("ERROR").message(message).build();
+        }
+    }
+}
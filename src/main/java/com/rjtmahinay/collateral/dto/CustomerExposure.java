@@ -0,0 +1,41 @@
+package com.rjtmahinay.collateral.dto;
+
+import com.rjtmahinay.collateral.model.CollateralType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerExposure {
+    private String customerId;
+    private Long collateralCount;
+    private BigDecimal totalMarketValue;
+    private BigDecimal totalEncumberedValue;
+    private BigDecimal totalAvailableValue;
+    private Long activeEncumbranceCount;
+    private BigDecimal activeEncumbranceAmount;
+    private List<TypeExposure> byType;
+    private LocalDateTime asOf;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TypeExposure {
+        private CollateralType type;
+        private Long collateralCount;
+        private BigDecimal marketValue;
+        private BigDecimal encumberedValue;
+        private BigDecimal availableValue;
+        private Long activeEncumbranceCount;
+        private BigDecimal activeEncumbranceAmount;
+    }
+}
@@ -0,0 +1,19 @@
+package com.rjtmahinay.collateral.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EncumberedValueDrift {
+    private Long id;
+    private String collateralId;
+    private BigDecimal recordedValue;
+    private BigDecimal actualValue;
+}
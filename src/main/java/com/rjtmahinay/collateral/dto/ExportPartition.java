@@ -0,0 +1,16 @@
+package com.rjtmahinay.collateral.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExportPartition {
+    private String type;
+    private String status;
+    private Long rowCount;
+}
@@ -0,0 +1,33 @@
+package com.rjtmahinay.collateral.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportReport {
+    private List<TableReport> tables;
+    private Long indexRebuildMillis;
+    private Long balanceRecomputeMillis;
+    private Long elapsedMillis;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TableReport {
+        private String table;
+        private String file;
+        private Long read;
+        private Long inserted;
+        private Long rejected;
+        private Long elapsedMillis;
+        private Long rowsPerSecond;
+    }
+}
@@ -0,0 +1,16 @@
+package com.rjtmahinay.collateral.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LienPosition {
+    private String collateralId;
+    // Most junior priority among the collateral's ACTIVE encumbrances
+    private Integer priority;
+}
@@ -0,0 +1,26 @@
+package com.rjtmahinay.collateral.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MarketStatsDrift {
+    private String type;
+    private String location;
+    private String make;
+    private String model;
+    private Integer modelYear;
+    private LocalDate periodStart;
+    private Long recordedCount;
+    private Long actualCount;
+    private BigDecimal recordedSum;
+    private BigDecimal actualSum;
+}
@@ -0,0 +1,22 @@
+package com.rjtmahinay.collateral.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MarketTrend {
+    private LocalDate periodStart;
+    private Long sampleCount;
+    private BigDecimal averageValue;
+    private BigDecimal minValue;
+    private BigDecimal maxValue;
+    private BigDecimal medianValue;
+}
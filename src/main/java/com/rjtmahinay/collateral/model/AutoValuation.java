@@ -33,6 +33,15 @@ public class AutoValuation {
     @Column("location")
     private String location;
 
+    @Column("make")
+    private String make;
+
+    @Column("model")
+    private String model;
+
+    @Column("model_year")
+    private Integer modelYear;
+
     @Column("description")
     private String description;
 
@@ -0,0 +1,44 @@
+package com.rjtmahinay.collateral.model;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outbox row written in the same transaction as a collateral or encumbrance mutation. The surrogate {@code id}
+ * is the stream offset consumers resume from.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("change_event")
+public class ChangeEvent {
+
+    @Id
+    private Long id;
+
+    @Column("aggregate_type")
+    private String aggregateType;
+
+    @Column("aggregate_id")
+    private String aggregateId;
+
+    @Column("event_type")
+    private String eventType;
+
+    // JSON snapshot of the aggregate (or of the change, for balance adjustments)
+    @JsonRawValue
+    @Column("payload")
+    private String payload;
+
+    @Column("created_at")
+    private LocalDateTime createdAt;
+}
@@ -2,6 +2,7 @@ package com.rjtmahinay.collateral.model;
 
 public enum CollateralStatus {
     ACTIVE("Active"),
+    AVAILABLE("Available"),
     PENDING_EVALUATION("Pending Evaluation"),
     UNDER_REVIEW("Under Review"),
     APPROVED("Approved"),
@@ -6,6 +6,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
@@ -75,4 +76,8 @@ public class Encumbrance {
 
     @Column("notes")
     private String notes;
+
+    @Version
+    @Column("version")
+    private Long version;
 }
@@ -0,0 +1,61 @@
+package com.rjtmahinay.collateral.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Monthly aggregate of completed valuations for one market bucket. Valuations without a make, model or year are
+ * bucketed under an empty make/model and model year 0.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("market_stats")
+public class MarketStats {
+
+    @Id
+    private Long id;
+
+    @Column("type")
+    private String type;
+
+    @Column("location")
+    private String location;
+
+    @Column("make")
+    private String make;
+
+    @Column("model")
+    private String model;
+
+    @Column("model_year")
+    private Integer modelYear;
+
+    @Column("period_start")
+    private LocalDate periodStart;
+
+    @Column("sample_count")
+    private Long sampleCount;
+
+    @Column("value_sum")
+    private BigDecimal valueSum;
+
+    @Column("min_value")
+    private BigDecimal minValue;
+
+    @Column("max_value")
+    private BigDecimal maxValue;
+
+    @Column("updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,47 @@
+package com.rjtmahinay.collateral.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a portfolio revaluation run. {@code lastCollateralId} is the surrogate id of the last collateral
+ * whose batch was committed; an incomplete run resumes after it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("revaluation_checkpoint")
+public class RevaluationCheckpoint {
+
+    @Id
+    private Long id;
+
+    @Column("job_name")
+    private String jobName;
+
+    @Column("last_collateral_id")
+    private Long lastCollateralId;
+
+    @Column("processed_count")
+    private Long processedCount;
+
+    @Column("completed")
+    private Boolean completed;
+
+    @Column("started_at")
+    private LocalDateTime startedAt;
+
+    @Column("updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column("completed_at")
+    private LocalDateTime completedAt;
+}
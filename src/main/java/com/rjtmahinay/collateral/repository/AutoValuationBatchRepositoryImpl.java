@@ -0,0 +1,46 @@
+package com.rjtmahinay.collateral.repository;
+
+import com.rjtmahinay.collateral.model.AutoValuation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+class AutoValuationBatchRepositoryImpl implements AutoValuationBatchRepository {
+
+    private static final MultiRowInsert<AutoValuation> INSERT = MultiRowInsert.<AutoValuation>into("auto_valuation")
+            .column("valuation_id", String.class, AutoValuation::getValuationId)
+            .column("collateral_id", String.class, AutoValuation::getCollateralId)
+            .column("type", String.class, AutoValuation::getType)
+            .column("location", String.class, AutoValuation::getLocation)
+            .column("make", String.class, AutoValuation::getMake)
+            .column("model", String.class, AutoValuation::getModel)
+            .column("model_year", Integer.class, AutoValuation::getModelYear)
+            .column("description", String.class, AutoValuation::getDescription)
+            .column("status", String.class, AutoValuation::getStatus)
+            .column("estimated_value", BigDecimal.class, AutoValuation::getEstimatedValue)
+            .column("low_range", BigDecimal.class, AutoValuation::getLowRange)
+            .column("high_range", BigDecimal.class, AutoValuation::getHighRange)
+            .column("currency", String.class, AutoValuation::getCurrency)
+            .column("methodology", String.class, AutoValuation::getMethodology)
+            .column("confidence_score", Double.class, AutoValuation::getConfidenceScore)
+            .column("valuation_date", LocalDateTime.class, AutoValuation::getValuationDate)
+            .column("request_date", LocalDateTime.class, AutoValuation::getRequestDate)
+            .column("created_at", LocalDateTime.class, AutoValuation::getCreatedAt)
+            .column("updated_at", LocalDateTime.class, AutoValuation::getUpdatedAt)
+            .column("created_by", String.class, AutoValuation::getCreatedBy)
+            .column("updated_by", String.class, AutoValuation::getUpdatedBy)
+            .column("message", String.class, AutoValuation::getMessage)
+            .build();
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Mono<Long> insertAll(List<AutoValuation> valuations) {
+        return INSERT.insertAll(databaseClient, valuations);
+    }
+}
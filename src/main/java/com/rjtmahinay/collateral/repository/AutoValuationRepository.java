@@ -8,7 +8,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Repository
-public interface AutoValuationRepository extends ReactiveCrudRepository<AutoValuation, Long> {
+public interface AutoValuationRepository extends ReactiveCrudRepository<AutoValuation, Long>, AutoValuationBatchRepository {
 
     Mono<AutoValuation> findByValuationId(String valuationId);
 
@@ -16,14 +16,17 @@ public interface AutoValuationRepository extends ReactiveCrudRepository<AutoValu
 
     Flux<AutoValuation> findByType(String type);
 
+    @Query("SELECT * FROM auto_valuation WHERE type = :type AND id > :afterId ORDER BY type, id LIMIT :limit")
+    Flux<AutoValuation> findByTypeAfter(String type, Long afterId, int limit);
+
     Flux<AutoValuation> findByLocation(String location);
 
     Flux<AutoValuation> findByStatus(AutoValuation.ValuationStatus status);
 
-    @Query("SELECT * FROM auto_valuation WHERE collateral_id = :collateralId ORDER BY valuation_date DESC LIMIT 1")
+    @Query("SELECT * FROM auto_valuation WHERE collateral_id = :collateralId ORDER BY collateral_id DESC, valuation_date DESC LIMIT 1")
     Mono<AutoValuation> findLatestByCollateralId(String collateralId);
 
-    @Query("SELECT * FROM auto_valuation WHERE type = :type AND location = :location ORDER BY valuation_date DESC")
+    @Query("SELECT * FROM auto_valuation WHERE type = :type AND location = :location ORDER BY type, location, valuation_date DESC")
     Flux<AutoValuation> findByTypeAndLocationOrderByValuationDateDesc(String type, String location);
 
     @Query("SELECT * FROM auto_valuation WHERE valuation_date >= :fromDate AND valuation_date <= :toDate")
@@ -0,0 +1,28 @@
+package com.rjtmahinay.collateral.repository;
+
+import com.rjtmahinay.collateral.model.ChangeEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+class ChangeEventBatchRepositoryImpl implements ChangeEventBatchRepository {
+
+    private static final MultiRowInsert<ChangeEvent> INSERT = MultiRowInsert.<ChangeEvent>into("change_event")
+            .column("aggregate_type", String.class, ChangeEvent::getAggregateType)
+            .column("aggregate_id", String.class, ChangeEvent::getAggregateId)
+            .column("event_type", String.class, ChangeEvent::getEventType)
+            .column("payload", String.class, ChangeEvent::getPayload)
+            .column("created_at", LocalDateTime.class, ChangeEvent::getCreatedAt)
+            .build();
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Mono<Long> insertAll(List<ChangeEvent> events) {
+        return INSERT.insertAll(databaseClient, events);
+    }
+}
@@ -0,0 +1,21 @@
+package com.rjtmahinay.collateral.repository;
+
+import com.rjtmahinay.collateral.model.ChangeEvent;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+public interface ChangeEventRepository extends R2dbcRepository<ChangeEvent, Long>, ChangeEventBatchRepository {
+
+    @Query("SELECT * FROM change_event WHERE id > :afterId ORDER BY id LIMIT :limit")
+    Flux<ChangeEvent> findAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM change_event WHERE created_at < :cutoff")
+    Mono<Integer> deleteOlderThan(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,45 @@
+package com.rjtmahinay.collateral.repository;
+
+import com.rjtmahinay.collateral.model.Collateral;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+class CollateralBatchRepositoryImpl implements CollateralBatchRepository {
+
+    private static final MultiRowInsert<Collateral> INSERT = MultiRowInsert.<Collateral>into("collateral")
+            .column("collateral_id", String.class, Collateral::getCollateralId)
+            .column("customer_id", String.class, Collateral::getCustomerId)
+            .column("account_id", String.class, Collateral::getAccountId)
+            .column("type", String.class, Collateral::getType)
+            .column("description", String.class, Collateral::getDescription)
+            .column("estimated_value", BigDecimal.class, Collateral::getEstimatedValue)
+            .column("market_value", BigDecimal.class, Collateral::getMarketValue)
+            .column("currency", String.class, Collateral::getCurrency)
+            .column("status", String.class, Collateral::getStatus)
+            .column("location", String.class, Collateral::getLocation)
+            .column("evaluation_date", LocalDateTime.class, Collateral::getEvaluationDate)
+            .column("created_at", LocalDateTime.class, Collateral::getCreatedAt)
+            .column("updated_at", LocalDateTime.class, Collateral::getUpdatedAt)
+            .column("created_by", String.class, Collateral::getCreatedBy)
+            .column("updated_by", String.class, Collateral::getUpdatedBy)
+            .column("available_value", BigDecimal.class, Collateral::getAvailableValue)
+            .column("encumbered_value", BigDecimal.class, Collateral::getEncumberedValue)
+            .column("legal_description", String.class, Collateral::getLegalDescription)
+            .column("ownership_documents", String.class, Collateral::getOwnershipDocuments)
+            .column("last_inspection_date", LocalDateTime.class, Collateral::getLastInspectionDate)
+            .column("risk_rating", String.class, Collateral::getRiskRating)
+            .build();
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Mono<Long> insertAll(List<Collateral> collaterals) {
+        return INSERT.insertAll(databaseClient, collaterals);
+    }
+}
@@ -1,8 +1,11 @@
 package com.rjtmahinay.collateral.repository;
 
+import com.rjtmahinay.collateral.dto.CustomerExposure.TypeExposure;
+import com.rjtmahinay.collateral.dto.EncumberedValueDrift;
 import com.rjtmahinay.collateral.model.Collateral;
 import com.rjtmahinay.collateral.model.CollateralStatus;
 import com.rjtmahinay.collateral.model.CollateralType;
+import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.data.repository.query.Param;
@@ -10,8 +13,11 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 
-public interface CollateralRepository extends R2dbcRepository<Collateral, Long> {
+public interface CollateralRepository extends R2dbcRepository<Collateral, Long>, CollateralBatchRepository,
+        CollateralUpdateRepository {
 
     Mono<Collateral> findByCollateralId(String collateralId);
 
@@ -23,20 +29,49 @@ public interface CollateralRepository extends R2dbcRepository<Collateral, Long>
 
     Flux<Collateral> findByType(CollateralType type);
 
+    Flux<Collateral> findByCollateralIdIn(Collection<String> collateralIds);
+
     @Query("SELECT * FROM collateral WHERE customer_id = :customerId AND status = 'AVAILABLE' AND available_value >= :minValue")
     Flux<Collateral> findAvailableCollateralsByCustomerIdAndMinValue(@Param("customerId") String customerId,
             @Param("minValue") BigDecimal minValue);
 
-    @Query("SELECT * FROM collateral WHERE status = 'ENCUMBERED' OR encumbered_value > 0")
-    Flux<Collateral> findEncumberedCollaterals();
+    @Query("SELECT * FROM collateral WHERE status = 'AVAILABLE' AND available_value IS NOT NULL AND id > :afterId ORDER BY status, id LIMIT :limit")
+    Flux<Collateral> findAvailableCollateralsAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    @Query("SELECT * FROM collateral WHERE (status = 'ENCUMBERED' OR encumbered_value > 0) AND id > :afterId ORDER BY id LIMIT :limit")
+    Flux<Collateral> findEncumberedCollateralsAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    @Query("SELECT * FROM collateral WHERE status = :status AND type IN (:types) AND market_value IS NOT NULL AND id > :afterId ORDER BY status, id LIMIT :limit")
+    Flux<Collateral> findForRevaluationAfter(@Param("status") String status, @Param("types") Collection<String> types,
+            @Param("afterId") Long afterId, @Param("limit") int limit);
+
+    @Query("SELECT COUNT(*) FROM collateral WHERE type IN (:types) AND status IN (:statuses) AND market_value IS NOT NULL AND id > :afterId")
+    Mono<Long> countForRevaluationAfter(@Param("types") Collection<String> types,
+            @Param("statuses") Collection<String> statuses, @Param("afterId") Long afterId);
+
+    // Marks a batch as revalued at its current market value, matching requestAutoValuation
+    @Modifying
+    @Query("UPDATE collateral SET estimated_value = market_value, available_value = market_value - COALESCE(encumbered_value, 0), evaluation_date = :valuationDate, version = version + 1, updated_at = CURRENT_TIMESTAMP WHERE collateral_id IN (:collateralIds)")
+    Mono<Integer> markRevaluated(@Param("collateralIds") Collection<String> collateralIds,
+            @Param("valuationDate") LocalDateTime valuationDate);
+
+    @Modifying
+    @Query("UPDATE collateral SET encumbered_value = COALESCE(encumbered_value, 0) + :delta, available_value = market_value - (COALESCE(encumbered_value, 0) + :delta), status = CASE WHEN COALESCE(encumbered_value, 0) + :delta > 0 THEN 'ENCUMBERED' ELSE 'AVAILABLE' END, version = version + 1, updated_at = CURRENT_TIMESTAMP WHERE collateral_id = :collateralId")
+    Mono<Integer> adjustEncumberedValueByCollateralId(@Param("collateralId") String collateralId,
+            @Param("delta") BigDecimal delta);
+
+    @Modifying
+    @Query("UPDATE collateral SET encumbered_value = COALESCE(encumbered_value, 0) + :delta, available_value = market_value - (COALESCE(encumbered_value, 0) + :delta), status = CASE WHEN COALESCE(encumbered_value, 0) + :delta > 0 THEN 'ENCUMBERED' ELSE 'AVAILABLE' END, version = version + 1, updated_at = CURRENT_TIMESTAMP WHERE collateral_id = :collateralId AND version = :version")
+    Mono<Integer> adjustEncumberedValueByCollateralIdAndVersion(@Param("collateralId") String collateralId,
+            @Param("delta") BigDecimal delta, @Param("version") Long version);
 
-    @Query("UPDATE collateral SET market_value = :marketValue, available_value = :marketValue - encumbered_value, updated_at = CURRENT_TIMESTAMP WHERE collateral_id = :collateralId")
-    Mono<Integer> updateMarketValueByCollateralId(@Param("collateralId") String collateralId,
-            @Param("marketValue") BigDecimal marketValue);
+    // The ACTIVE SUM is looked up per collateral, so a page walks the primary key and stops at :limit drifted rows
+    @Query("SELECT c.id, c.collateral_id, COALESCE(c.encumbered_value, 0) AS recorded_value, (SELECT COALESCE(SUM(e.amount), 0) FROM encumbrance e WHERE e.collateral_id = c.collateral_id AND e.status = 'ACTIVE') AS actual_value FROM collateral c WHERE c.id > :afterId AND COALESCE(c.encumbered_value, 0) <> (SELECT COALESCE(SUM(e.amount), 0) FROM encumbrance e WHERE e.collateral_id = c.collateral_id AND e.status = 'ACTIVE') ORDER BY c.id LIMIT :limit")
+    Flux<EncumberedValueDrift> findEncumberedValueDriftAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
 
-    @Query("UPDATE collateral SET encumbered_value = :encumberedValue, available_value = market_value - :encumberedValue, status = CASE WHEN :encumberedValue > 0 THEN 'ENCUMBERED' ELSE 'AVAILABLE' END, updated_at = CURRENT_TIMESTAMP WHERE collateral_id = :collateralId")
-    Mono<Integer> updateEncumberedValueByCollateralId(@Param("collateralId") String collateralId,
-            @Param("encumberedValue") BigDecimal encumberedValue);
+    // Active encumbrances are pre-aggregated per collateral so the join does not repeat collateral values
+    @Query("SELECT c.type, CAST(COUNT(*) AS BIGINT) AS collateral_count, COALESCE(SUM(c.market_value), 0) AS market_value, COALESCE(SUM(c.encumbered_value), 0) AS encumbered_value, COALESCE(SUM(c.available_value), 0) AS available_value, CAST(COALESCE(SUM(e.encumbrance_count), 0) AS BIGINT) AS active_encumbrance_count, COALESCE(SUM(e.encumbrance_amount), 0) AS active_encumbrance_amount FROM collateral c LEFT JOIN (SELECT ec.collateral_id, COUNT(*) AS encumbrance_count, SUM(ec.amount) AS encumbrance_amount FROM encumbrance ec JOIN collateral owned ON owned.collateral_id = ec.collateral_id WHERE owned.customer_id = :customerId AND ec.status = 'ACTIVE' GROUP BY ec.collateral_id) e ON e.collateral_id = c.collateral_id WHERE c.customer_id = :customerId AND c.status NOT IN ('REJECTED', 'RELEASED', 'LIQUIDATED', 'EXPIRED', 'INACTIVE') GROUP BY c.type ORDER BY c.type")
+    Flux<TypeExposure> findExposureByCustomerId(@Param("customerId") String customerId);
 
     Mono<Void> deleteByCollateralId(String collateralId);
 }
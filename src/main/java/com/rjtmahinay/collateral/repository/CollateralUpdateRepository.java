@@ -0,0 +1,28 @@
+package com.rjtmahinay.collateral.repository;
+
+import com.rjtmahinay.collateral.model.Collateral;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+public interface CollateralUpdateRepository {
+
+    /**
+     * Sets the market value and returns the updated collateral in the same round trip, or empty when there is
+     * no such collateral.
+     */
+    Mono<Collateral> updateMarketValueAndGet(String collateralId, BigDecimal marketValue);
+
+    /**
+     * Sets the encumbered value, and the status that follows from it, and returns the updated collateral in the
+     * same round trip, or empty when there is no such collateral.
+     */
+    Mono<Collateral> updateEncumberedValueAndGet(String collateralId, BigDecimal encumberedValue);
+
+    /**
+     * Resets the encumbered value to the SUM of the collateral's ACTIVE encumbrances, computed by the UPDATE
+     * itself, and returns the updated collateral. Empty when the recorded value is no longer
+     * {@code recordedValue}, i.e. a posting or release committed since the drift was read.
+     */
+    Mono<Collateral> repairEncumberedValueAndGet(String collateralId, BigDecimal recordedValue);
+}
@@ -0,0 +1,61 @@
+package com.rjtmahinay.collateral.repository;
+
+import com.rjtmahinay.collateral.model.Collateral;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+@RequiredArgsConstructor
+class CollateralUpdateRepositoryImpl implements CollateralUpdateRepository {
+
+    private static final String UPDATE_MARKET_VALUE = "UPDATE collateral SET market_value = :marketValue, "
+            + "available_value = :marketValue - encumbered_value, version = version + 1, "
+            + "updated_at = CURRENT_TIMESTAMP WHERE collateral_id = :collateralId";
+
+    private static final String UPDATE_ENCUMBERED_VALUE = "UPDATE collateral SET encumbered_value = :encumberedValue, "
+            + "available_value = market_value - :encumberedValue, "
+            + "status = CASE WHEN :encumberedValue > 0 THEN 'ENCUMBERED' ELSE 'AVAILABLE' END, "
+            + "version = version + 1, updated_at = CURRENT_TIMESTAMP WHERE collateral_id = :collateralId";
+
+    private static final String ACTIVE_SUM = "(SELECT COALESCE(SUM(e.amount), 0) FROM encumbrance e "
+            + "WHERE e.collateral_id = collateral.collateral_id AND e.status = 'ACTIVE')";
+
+    private static final String REPAIR_ENCUMBERED_VALUE = "UPDATE collateral SET encumbered_value = " + ACTIVE_SUM
+            + ", available_value = market_value - " + ACTIVE_SUM
+            + ", status = CASE WHEN " + ACTIVE_SUM + " > 0 THEN 'ENCUMBERED' ELSE 'AVAILABLE' END, "
+            + "version = version + 1, updated_at = CURRENT_TIMESTAMP "
+            + "WHERE collateral_id = :collateralId AND COALESCE(encumbered_value, 0) = :recordedValue";
+
+    private final DatabaseClient databaseClient;
+    private final R2dbcConverter converter;
+
+    @Override
+    public Mono<Collateral> updateMarketValueAndGet(String collateralId, BigDecimal marketValue) {
+        return databaseClient.sql(ReturningUpdates.returning(databaseClient, UPDATE_MARKET_VALUE))
+                .bind("collateralId", collateralId)
+                .bind("marketValue", marketValue)
+                .map((row, metadata) -> converter.read(Collateral.class, row, metadata))
+                .one();
+    }
+
+    @Override
+    public Mono<Collateral> updateEncumberedValueAndGet(String collateralId, BigDecimal encumberedValue) {
+        return databaseClient.sql(ReturningUpdates.returning(databaseClient, UPDATE_ENCUMBERED_VALUE))
+                .bind("collateralId", collateralId)
+                .bind("encumberedValue", encumberedValue)
+                .map((row, metadata) -> converter.read(Collateral.class, row, metadata))
+                .one();
+    }
+
+    @Override
+    public Mono<Collateral> repairEncumberedValueAndGet(String collateralId, BigDecimal recordedValue) {
+        return databaseClient.sql(ReturningUpdates.returning(databaseClient, REPAIR_ENCUMBERED_VALUE))
+                .bind("collateralId", collateralId)
+                .bind("recordedValue", recordedValue)
+                .map((row, metadata) -> converter.read(Collateral.class, row, metadata))
+                .one();
+    }
+}
@@ -0,0 +1,14 @@
+package com.rjtmahinay.collateral.repository;
+
+import com.rjtmahinay.collateral.model.Encumbrance;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface EncumbranceBatchRepository {
+
+    /**
+     * Inserts the batch with a single multi-row INSERT statement and returns the number of rows written.
+     */
+    Mono<Long> insertAll(List<Encumbrance> encumbrances);
+}
@@ -0,0 +1,42 @@
+package com.rjtmahinay.collateral.repository;
+
+import com.rjtmahinay.collateral.model.Encumbrance;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+class EncumbranceBatchRepositoryImpl implements EncumbranceBatchRepository {
+
+    private static final MultiRowInsert<Encumbrance> INSERT = MultiRowInsert.<Encumbrance>into("encumbrance")
+            .column("encumbrance_id", String.class, Encumbrance::getEncumbranceId)
+            .column("collateral_id", String.class, Encumbrance::getCollateralId)
+            .column("loan_id", String.class, Encumbrance::getLoanId)
+            .column("customer_id", String.class, Encumbrance::getCustomerId)
+            .column("amount", BigDecimal.class, Encumbrance::getAmount)
+            .column("currency", String.class, Encumbrance::getCurrency)
+            .column("type", String.class, Encumbrance::getType)
+            .column("status", String.class, Encumbrance::getStatus)
+            .column("effective_date", LocalDateTime.class, Encumbrance::getEffectiveDate)
+            .column("expiry_date", LocalDateTime.class, Encumbrance::getExpiryDate)
+            .column("created_at", LocalDateTime.class, Encumbrance::getCreatedAt)
+            .column("updated_at", LocalDateTime.class, Encumbrance::getUpdatedAt)
+            .column("created_by", String.class, Encumbrance::getCreatedBy)
+            .column("updated_by", String.class, Encumbrance::getUpdatedBy)
+            .column("description", String.class, Encumbrance::getDescription)
+            .column("priority", Integer.class, Encumbrance::getPriority)
+            .column("legal_reference", String.class, Encumbrance::getLegalReference)
+            .column("notes", String.class, Encumbrance::getNotes)
+            .build();
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Mono<Long> insertAll(List<Encumbrance> encumbrances) {
+        return INSERT.insertAll(databaseClient, encumbrances);
+    }
+}
@@ -1,7 +1,9 @@
 package com.rjtmahinay.collateral.repository;
 
+import com.rjtmahinay.collateral.dto.LienPosition;
 import com.rjtmahinay.collateral.model.Encumbrance;
 import com.rjtmahinay.collateral.model.EncumbranceStatus;
+import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.data.repository.query.Param;
@@ -10,8 +12,10 @@ import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 
-public interface EncumbranceRepository extends R2dbcRepository<Encumbrance, Long> {
+public interface EncumbranceRepository extends R2dbcRepository<Encumbrance, Long>, EncumbranceBatchRepository,
+        EncumbranceUpdateRepository {
 
     Mono<Encumbrance> findByEncumbranceId(String encumbranceId);
 
@@ -23,6 +27,10 @@ public interface EncumbranceRepository extends R2dbcRepository<Encumbrance, Long
 
     Flux<Encumbrance> findByStatus(EncumbranceStatus status);
 
+    @Query("SELECT * FROM encumbrance WHERE status = :status AND id > :afterId ORDER BY status, id LIMIT :limit")
+    Flux<Encumbrance> findByStatusAfter(@Param("status") EncumbranceStatus status, @Param("afterId") Long afterId,
+            @Param("limit") int limit);
+
     @Query("SELECT * FROM encumbrance WHERE collateral_id = :collateralId AND status = 'ACTIVE'")
     Flux<Encumbrance> findActiveEncumbrancesByCollateralId(@Param("collateralId") String collateralId);
 
@@ -32,16 +40,23 @@ public interface EncumbranceRepository extends R2dbcRepository<Encumbrance, Long
     @Query("SELECT COALESCE(SUM(amount), 0) FROM encumbrance WHERE collateral_id = :collateralId AND status = 'ACTIVE'")
     Mono<BigDecimal> getTotalEncumberedAmountByCollateralId(@Param("collateralId") String collateralId);
 
-    @Query("UPDATE encumbrance SET status = 'RELEASED', updated_at = CURRENT_TIMESTAMP, updated_by = :releasedBy WHERE encumbrance_id = :encumbranceId")
-    Mono<Integer> releaseEncumbranceById(@Param("encumbranceId") String encumbranceId,
-            @Param("releasedBy") String releasedBy);
+    @Query("SELECT e.collateral_id, MAX(COALESCE(e.priority, 1)) AS priority FROM encumbrance e JOIN collateral c ON c.collateral_id = e.collateral_id WHERE c.customer_id = :customerId AND e.status = 'ACTIVE' GROUP BY e.collateral_id")
+    Flux<LienPosition> findLienPositionsByCustomerId(@Param("customerId") String customerId);
+
+    // Oldest expired first, read in order from idx_encumbrance_status_expiry_date without touching the table
+    @Query("SELECT id FROM encumbrance WHERE status = 'ACTIVE' AND expiry_date < :currentDate ORDER BY status, expiry_date, id LIMIT :limit")
+    Flux<Long> findExpiredEncumbranceIds(@Param("currentDate") LocalDateTime currentDate, @Param("limit") int limit);
+
+    // Locked by primary key; rows released since their id was read drop out, the rest stay locked until commit
+    @Query("SELECT * FROM encumbrance WHERE id IN (:ids) AND status = 'ACTIVE' FOR UPDATE")
+    Flux<Encumbrance> lockActiveEncumbrancesById(@Param("ids") Collection<Long> ids);
 
-    @Query("UPDATE encumbrance SET amount = amount - :releaseAmount, updated_at = CURRENT_TIMESTAMP, updated_by = :releasedBy WHERE encumbrance_id = :encumbranceId")
-    Mono<Integer> partiallyReleaseEncumbrance(@Param("encumbranceId") String encumbranceId,
-            @Param("releaseAmount") BigDecimal releaseAmount, @Param("releasedBy") String releasedBy);
+    @Query("SELECT COUNT(*) FROM encumbrance WHERE status = 'ACTIVE' AND expiry_date < :currentDate")
+    Mono<Long> countExpiredEncumbrances(@Param("currentDate") LocalDateTime currentDate);
 
-    @Query("UPDATE encumbrance SET status = 'EXPIRED', updated_at = CURRENT_TIMESTAMP WHERE expiry_date < :currentDate AND status = 'ACTIVE'")
-    Mono<Integer> expireEncumbrances(@Param("currentDate") LocalDateTime currentDate);
+    @Modifying
+    @Query("UPDATE encumbrance SET status = 'EXPIRED', version = version + 1, updated_at = CURRENT_TIMESTAMP WHERE id IN (:ids) AND status = 'ACTIVE'")
+    Mono<Integer> expireEncumbrancesById(@Param("ids") Collection<Long> ids);
 
     Mono<Void> deleteByEncumbranceId(String encumbranceId);
 }
@@ -0,0 +1,22 @@
+package com.rjtmahinay.collateral.repository;
+
+import com.rjtmahinay.collateral.model.Encumbrance;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+public interface EncumbranceUpdateRepository {
+
+    /**
+     * Marks the encumbrance RELEASED if it is still at {@code version} and returns it in the same round trip;
+     * empty means it was modified concurrently or does not exist.
+     */
+    Mono<Encumbrance> releaseAndGet(String encumbranceId, String releasedBy, Long version);
+
+    /**
+     * Reduces the encumbrance amount by {@code releaseAmount} if it is still at {@code version} and returns it in
+     * the same round trip; empty means it was modified concurrently or does not exist.
+     */
+    Mono<Encumbrance> partiallyReleaseAndGet(String encumbranceId, BigDecimal releaseAmount, String releasedBy,
+            Long version);
+}
@@ -0,0 +1,47 @@
+package com.rjtmahinay.collateral.repository;
+
+import com.rjtmahinay.collateral.model.Encumbrance;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.Parameter;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+@RequiredArgsConstructor
+class EncumbranceUpdateRepositoryImpl implements EncumbranceUpdateRepository {
+
+    private static final String RELEASE = "UPDATE encumbrance SET status = 'RELEASED', version = version + 1, "
+            + "updated_at = CURRENT_TIMESTAMP, updated_by = :releasedBy "
+            + "WHERE encumbrance_id = :encumbranceId AND version = :version";
+
+    private static final String PARTIALLY_RELEASE = "UPDATE encumbrance SET amount = amount - :releaseAmount, "
+            + "version = version + 1, updated_at = CURRENT_TIMESTAMP, updated_by = :releasedBy "
+            + "WHERE encumbrance_id = :encumbranceId AND version = :version";
+
+    private final DatabaseClient databaseClient;
+    private final R2dbcConverter converter;
+
+    @Override
+    public Mono<Encumbrance> releaseAndGet(String encumbranceId, String releasedBy, Long version) {
+        return databaseClient.sql(ReturningUpdates.returning(databaseClient, RELEASE))
+                .bind("encumbranceId", encumbranceId)
+                .bind("releasedBy", Parameter.fromOrEmpty(releasedBy, String.class))
+                .bind("version", version)
+                .map((row, metadata) -> converter.read(Encumbrance.class, row, metadata))
+                .one();
+    }
+
+    @Override
+    public Mono<Encumbrance> partiallyReleaseAndGet(String encumbranceId, BigDecimal releaseAmount,
+            String releasedBy, Long version) {
+        return databaseClient.sql(ReturningUpdates.returning(databaseClient, PARTIALLY_RELEASE))
+                .bind("encumbranceId", encumbranceId)
+                .bind("releaseAmount", releaseAmount)
+                .bind("releasedBy", Parameter.fromOrEmpty(releasedBy, String.class))
+                .bind("version", version)
+                .map((row, metadata) -> converter.read(Encumbrance.class, row, metadata))
+                .one();
+    }
+}
@@ -0,0 +1,33 @@
+package com.rjtmahinay.collateral.repository;
+
+/**
+ * SQL fragments shared by the market_stats queries. The bucketing here must match
+ * {@code MarketStatsService#bucketOf}: make and model are trimmed and upper-cased, so "Toyota " and "TOYOTA" share
+ * a bucket.
+ */
+final class MarketStatsQueries {
+
+    static final String ELIGIBLE_VALUATION = "v.status = 'VALUATION_COMPLETED' AND v.estimated_value IS NOT NULL "
+            + "AND v.type IS NOT NULL AND v.location IS NOT NULL AND COALESCE(v.valuation_date, v.created_at) IS NOT NULL";
+
+    static final String PERIOD = "CAST(DATE_TRUNC('MONTH', COALESCE(v.valuation_date, v.created_at)) AS DATE)";
+
+    static final String MAKE = "UPPER(TRIM(COALESCE(v.make, '')))";
+
+    static final String MODEL = "UPPER(TRIM(COALESCE(v.model, '')))";
+
+    static final String BUCKET_COLUMNS = MAKE + ", " + MODEL + ", COALESCE(v.model_year, 0), " + PERIOD;
+
+    static final String BUCKET_COLUMNS_AS = MAKE + " AS make, " + MODEL + " AS model, "
+            + "COALESCE(v.model_year, 0) AS model_year, " + PERIOD + " AS period_start";
+
+    static final String VALUATION_IN_BUCKET = ELIGIBLE_VALUATION + " AND v.type = m.type AND v.location = m.location "
+            + "AND " + MAKE + " = m.make AND " + MODEL + " = m.model "
+            + "AND COALESCE(v.model_year, 0) = m.model_year AND " + PERIOD + " = m.period_start";
+
+    static final String MEDIAN_VALUE = "CAST(PERCENTILE_CONT(0.5) WITHIN GROUP (ORDER BY v.estimated_value) "
+            + "AS DECIMAL(19,2))";
+
+    private MarketStatsQueries() {
+    }
+}
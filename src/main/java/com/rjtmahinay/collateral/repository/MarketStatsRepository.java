@@ -0,0 +1,62 @@
+package com.rjtmahinay.collateral.repository;
+
+import com.rjtmahinay.collateral.dto.MarketStatsDrift;
+import com.rjtmahinay.collateral.dto.MarketTrend;
+import com.rjtmahinay.collateral.model.MarketStats;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public interface MarketStatsRepository extends R2dbcRepository<MarketStats, Long>, MarketStatsUpsertRepository {
+
+    @Modifying
+    @Query("UPDATE market_stats SET sample_count = sample_count - 1, value_sum = value_sum - :value, updated_at = CURRENT_TIMESTAMP WHERE type = :type AND location = :location AND make = :make AND model = :model AND model_year = :modelYear AND period_start = :periodStart")
+    Mono<Integer> decrementBucket(@Param("type") String type, @Param("location") String location,
+            @Param("make") String make, @Param("model") String model, @Param("modelYear") Integer modelYear,
+            @Param("periodStart") LocalDate periodStart, @Param("value") BigDecimal value);
+
+    // MIN/MAX cannot be decremented, so a retraction recomputes them from the bucket's own valuations
+    @Modifying
+    @Query("UPDATE market_stats m SET min_value = (SELECT MIN(v.estimated_value) FROM auto_valuation v WHERE " + MarketStatsQueries.VALUATION_IN_BUCKET + "), max_value = (SELECT MAX(v.estimated_value) FROM auto_valuation v WHERE " + MarketStatsQueries.VALUATION_IN_BUCKET + ") WHERE m.type = :type AND m.location = :location AND m.make = :make AND m.model = :model AND m.model_year = :modelYear AND m.period_start = :periodStart")
+    Mono<Integer> refreshBucketRange(@Param("type") String type, @Param("location") String location,
+            @Param("make") String make, @Param("model") String model, @Param("modelYear") Integer modelYear,
+            @Param("periodStart") LocalDate periodStart);
+
+    @Modifying
+    @Query("DELETE FROM market_stats WHERE sample_count <= 0 AND type = :type AND location = :location AND make = :make AND model = :model AND model_year = :modelYear AND period_start = :periodStart")
+    Mono<Integer> deleteEmptyBucket(@Param("type") String type, @Param("location") String location,
+            @Param("make") String make, @Param("model") String model, @Param("modelYear") Integer modelYear,
+            @Param("periodStart") LocalDate periodStart);
+
+    @Query("SELECT * FROM market_stats WHERE type = :type AND location = :location AND make = :make AND model = :model AND model_year = :modelYear ORDER BY period_start DESC")
+    Flux<MarketStats> findBucketHistory(@Param("type") String type, @Param("location") String location,
+            @Param("make") String make, @Param("model") String model, @Param("modelYear") Integer modelYear);
+
+    // A median cannot be maintained incrementally, so it is computed from the valuations of the type and location, read through their index
+    @Query("SELECT t.period_start, t.sample_count, t.average_value, t.min_value, t.max_value, p.median_value FROM (SELECT period_start, SUM(sample_count) AS sample_count, CAST(SUM(value_sum) / SUM(sample_count) AS DECIMAL(19,2)) AS average_value, MIN(min_value) AS min_value, MAX(max_value) AS max_value FROM market_stats WHERE type = :type AND location = :location GROUP BY period_start) t "
+            + "LEFT JOIN (SELECT " + MarketStatsQueries.PERIOD + " AS period_start, " + MarketStatsQueries.MEDIAN_VALUE + " AS median_value FROM auto_valuation v WHERE " + MarketStatsQueries.ELIGIBLE_VALUATION + " AND v.type = :type AND v.location = :location GROUP BY " + MarketStatsQueries.PERIOD + ") p ON p.period_start = t.period_start ORDER BY t.period_start DESC")
+    Flux<MarketTrend> findTrends(@Param("type") String type, @Param("location") String location);
+
+    // No row when the bucket has no valuations
+    @Query("SELECT " + MarketStatsQueries.MEDIAN_VALUE + " FROM auto_valuation v WHERE " + MarketStatsQueries.ELIGIBLE_VALUATION + " AND v.type = :type AND v.location = :location AND " + MarketStatsQueries.MAKE + " = :make AND " + MarketStatsQueries.MODEL + " = :model AND COALESCE(v.model_year, 0) = :modelYear HAVING COUNT(*) > 0")
+    Mono<BigDecimal> findMedianValue(@Param("type") String type, @Param("location") String location,
+            @Param("make") String make, @Param("model") String model, @Param("modelYear") Integer modelYear);
+
+    @Modifying
+    @Query("DELETE FROM market_stats")
+    Mono<Integer> deleteAllBuckets();
+
+    @Modifying
+    @Query("INSERT INTO market_stats (type, location, make, model, model_year, period_start, sample_count, value_sum, min_value, max_value) SELECT v.type, v.location, " + MarketStatsQueries.BUCKET_COLUMNS + ", COUNT(*), SUM(v.estimated_value), MIN(v.estimated_value), MAX(v.estimated_value) FROM auto_valuation v WHERE " + MarketStatsQueries.ELIGIBLE_VALUATION + " GROUP BY v.type, v.location, " + MarketStatsQueries.BUCKET_COLUMNS)
+    Mono<Integer> rebuildFromValuations();
+
+    @Query("SELECT a.type, a.location, a.make, a.model, a.model_year, a.period_start, m.sample_count AS recorded_count, a.sample_count AS actual_count, m.value_sum AS recorded_sum, a.value_sum AS actual_sum FROM (SELECT v.type, v.location, " + MarketStatsQueries.BUCKET_COLUMNS_AS + ", COUNT(*) AS sample_count, SUM(v.estimated_value) AS value_sum, MIN(v.estimated_value) AS min_value, MAX(v.estimated_value) AS max_value FROM auto_valuation v WHERE " + MarketStatsQueries.ELIGIBLE_VALUATION + " GROUP BY v.type, v.location, " + MarketStatsQueries.BUCKET_COLUMNS + ") a LEFT JOIN market_stats m ON m.type = a.type AND m.location = a.location AND m.make = a.make AND m.model = a.model AND m.model_year = a.model_year AND m.period_start = a.period_start WHERE m.id IS NULL OR m.sample_count <> a.sample_count OR m.value_sum <> a.value_sum OR m.min_value <> a.min_value OR m.max_value <> a.max_value "
+            + "UNION ALL SELECT m.type, m.location, m.make, m.model, m.model_year, m.period_start, m.sample_count, 0, m.value_sum, 0 FROM market_stats m WHERE NOT EXISTS (SELECT 1 FROM auto_valuation v WHERE " + MarketStatsQueries.VALUATION_IN_BUCKET + ")")
+    Flux<MarketStatsDrift> findDrift();
+}
@@ -0,0 +1,17 @@
+package com.rjtmahinay.collateral.repository;
+
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public interface MarketStatsUpsertRepository {
+
+    /**
+     * Adds {@code count} valuations with the given sum and range to the bucket, creating it when it does not exist
+     * yet, in a single statement: {@code INSERT ... ON CONFLICT DO UPDATE} on PostgreSQL and {@code MERGE} on H2.
+     * Unlike an UPDATE followed by an INSERT, a lost race never leaves a failed statement in the transaction.
+     */
+    Mono<Long> upsertBucket(String type, String location, String make, String model, Integer modelYear,
+            LocalDate periodStart, long count, BigDecimal valueSum, BigDecimal minValue, BigDecimal maxValue);
+}
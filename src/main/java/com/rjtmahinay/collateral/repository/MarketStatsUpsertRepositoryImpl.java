@@ -0,0 +1,61 @@
+package com.rjtmahinay.collateral.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@RequiredArgsConstructor
+class MarketStatsUpsertRepositoryImpl implements MarketStatsUpsertRepository {
+
+    private static final String POSTGRES_UPSERT = "INSERT INTO market_stats (type, location, make, model, model_year, "
+            + "period_start, sample_count, value_sum, min_value, max_value) VALUES (:type, :location, :make, :model, "
+            + ":modelYear, :periodStart, :count, :valueSum, :minValue, :maxValue) "
+            + "ON CONFLICT (type, location, make, model, model_year, period_start) DO UPDATE SET "
+            + "sample_count = market_stats.sample_count + EXCLUDED.sample_count, "
+            + "value_sum = market_stats.value_sum + EXCLUDED.value_sum, "
+            + "min_value = LEAST(COALESCE(market_stats.min_value, EXCLUDED.min_value), EXCLUDED.min_value), "
+            + "max_value = GREATEST(COALESCE(market_stats.max_value, EXCLUDED.max_value), EXCLUDED.max_value), "
+            + "updated_at = CURRENT_TIMESTAMP";
+
+    // Parameters are cast so H2 knows the source column types before binding
+    private static final String H2_UPSERT = "MERGE INTO market_stats m USING (SELECT "
+            + "CAST(:type AS VARCHAR(100)) AS type, CAST(:location AS VARCHAR(255)) AS location, "
+            + "CAST(:make AS VARCHAR(100)) AS make, CAST(:model AS VARCHAR(100)) AS model, "
+            + "CAST(:modelYear AS INTEGER) AS model_year, CAST(:periodStart AS DATE) AS period_start, "
+            + "CAST(:count AS BIGINT) AS sample_count, CAST(:valueSum AS DECIMAL(23,2)) AS value_sum, "
+            + "CAST(:minValue AS DECIMAL(19,2)) AS min_value, CAST(:maxValue AS DECIMAL(19,2)) AS max_value) s "
+            + "ON m.type = s.type AND m.location = s.location AND m.make = s.make AND m.model = s.model "
+            + "AND m.model_year = s.model_year AND m.period_start = s.period_start "
+            + "WHEN MATCHED THEN UPDATE SET sample_count = m.sample_count + s.sample_count, "
+            + "value_sum = m.value_sum + s.value_sum, "
+            + "min_value = LEAST(COALESCE(m.min_value, s.min_value), s.min_value), "
+            + "max_value = GREATEST(COALESCE(m.max_value, s.max_value), s.max_value), "
+            + "updated_at = CURRENT_TIMESTAMP "
+            + "WHEN NOT MATCHED THEN INSERT (type, location, make, model, model_year, period_start, sample_count, "
+            + "value_sum, min_value, max_value) VALUES (s.type, s.location, s.make, s.model, s.model_year, "
+            + "s.period_start, s.sample_count, s.value_sum, s.min_value, s.max_value)";
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Mono<Long> upsertBucket(String type, String location, String make, String model, Integer modelYear,
+            LocalDate periodStart, long count, BigDecimal valueSum, BigDecimal minValue, BigDecimal maxValue) {
+        String database = databaseClient.getConnectionFactory().getMetadata().getName();
+        return databaseClient.sql(database.startsWith("H2") ? H2_UPSERT : POSTGRES_UPSERT)
+                .bind("type", type)
+                .bind("location", location)
+                .bind("make", make)
+                .bind("model", model)
+                .bind("modelYear", modelYear)
+                .bind("periodStart", periodStart)
+                .bind("count", count)
+                .bind("valueSum", valueSum)
+                .bind("minValue", minValue)
+                .bind("maxValue", maxValue)
+                .fetch()
+                .rowsUpdated();
+    }
+}
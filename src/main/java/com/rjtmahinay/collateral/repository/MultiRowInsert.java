@@ -0,0 +1,91 @@
+package com.rjtmahinay.collateral.repository;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.Parameter;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Writes a batch of rows with a single multi-row {@code INSERT ... VALUES (...), (...)} statement. Each column is
+ * declared once with its bind type and how to read it from a row; nulls are bound as typed empty parameters and
+ * enums by name, so every batch repository binds the same way.
+ */
+public final class MultiRowInsert<T> {
+
+    private final String prefix;
+    private final List<Column<T>> columns;
+
+    private MultiRowInsert(String table, List<Column<T>> columns) {
+        this.prefix = "INSERT INTO " + table + " ("
+                + String.join(", ", columns.stream().map(Column::name).toList()) + ") VALUES ";
+        this.columns = List.copyOf(columns);
+    }
+
+    public static <T> Builder<T> into(String table) {
+        return new Builder<>(table);
+    }
+
+    /**
+     * Inserts the rows in one statement and returns the number of rows written.
+     */
+    public Mono<Long> insertAll(DatabaseClient databaseClient, List<? extends T> rows) {
+        if (rows.isEmpty()) {
+            return Mono.just(0L);
+        }
+
+        int columnCount = columns.size();
+        StringBuilder sql = new StringBuilder(prefix.length() + rows.size() * columnCount * 8).append(prefix);
+        for (int row = 0; row < rows.size(); row++) {
+            sql.append(row == 0 ? "(" : ", (");
+            for (int column = 0; column < columnCount; column++) {
+                sql.append(column == 0 ? ":p" : ", :p").append(row).append('_').append(column);
+            }
+            sql.append(')');
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        for (int row = 0; row < rows.size(); row++) {
+            T value = rows.get(row);
+            for (int column = 0; column < columnCount; column++) {
+                spec = spec.bind("p" + row + "_" + column, columns.get(column).bindValue(value));
+            }
+        }
+        return spec.fetch().rowsUpdated();
+    }
+
+    public static final class Builder<T> {
+
+        private final String table;
+        private final List<Column<T>> columns = new ArrayList<>();
+
+        private Builder(String table) {
+            this.table = table;
+        }
+
+        public Builder<T> column(String name, Class<?> type, Function<? super T, ?> value) {
+            columns.add(new Column<>(name, type, value));
+            return this;
+        }
+
+        public MultiRowInsert<T> build() {
+            if (columns.isEmpty()) {
+                throw new IllegalStateException("No columns declared for " + table);
+            }
+            return new MultiRowInsert<>(table, columns);
+        }
+    }
+
+    private record Column<T>(String name, Class<?> type, Function<? super T, ?> value) {
+
+        Parameter bindValue(T row) {
+            Object bound = value.apply(row);
+            if (bound instanceof Enum<?> constant) {
+                bound = constant.name();
+            }
+            return Parameter.fromOrEmpty(bound, type);
+        }
+    }
+}
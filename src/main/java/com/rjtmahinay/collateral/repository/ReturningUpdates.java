@@ -0,0 +1,20 @@
+package com.rjtmahinay.collateral.repository;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+
+/**
+ * Wraps an UPDATE so the same statement also returns the updated rows: {@code UPDATE ... RETURNING *} on
+ * PostgreSQL and {@code SELECT * FROM FINAL TABLE (UPDATE ...)} on H2, which has no RETURNING clause.
+ */
+final class ReturningUpdates {
+
+    private ReturningUpdates() {
+    }
+
+    static String returning(DatabaseClient databaseClient, String update) {
+        String database = databaseClient.getConnectionFactory().getMetadata().getName();
+        return database.startsWith("H2")
+                ? "SELECT * FROM FINAL TABLE (" + update + ")"
+                : update + " RETURNING *";
+    }
+}
@@ -0,0 +1,10 @@
+package com.rjtmahinay.collateral.repository;
+
+import com.rjtmahinay.collateral.model.RevaluationCheckpoint;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Mono;
+
+public interface RevaluationCheckpointRepository extends R2dbcRepository<RevaluationCheckpoint, Long> {
+
+    Mono<RevaluationCheckpoint> findByJobName(String jobName);
+}
@@ -23,15 +23,18 @@ public interface TitleRegistryRepository extends ReactiveCrudRepository<TitleReg
     @Query("SELECT * FROM title_registry WHERE legal_description = :legalDescription")
     Flux<TitleRegistry> findByLegalDescription(String legalDescription);
 
-    @Query("SELECT * FROM title_registry WHERE collateral_id = :collateralId ORDER BY verification_date DESC LIMIT 1")
+    @Query("SELECT * FROM title_registry WHERE collateral_id = :collateralId ORDER BY collateral_id DESC, verification_date DESC LIMIT 1")
     Mono<TitleRegistry> findLatestByCollateralId(String collateralId);
 
     @Query("SELECT * FROM title_registry WHERE current_owner = :owner AND status = 'VERIFIED'")
     Flux<TitleRegistry> findVerifiedTitlesByOwner(String owner);
 
-    @Query("SELECT * FROM title_registry WHERE is_valid = true AND status = 'VERIFIED'")
+    @Query("SELECT * FROM title_registry WHERE status = 'VERIFIED' AND is_valid = true")
     Flux<TitleRegistry> findAllValidTitles();
 
+    @Query("SELECT * FROM title_registry WHERE status = 'VERIFIED' AND is_valid = true AND id > :afterId ORDER BY status, is_valid, id LIMIT :limit")
+    Flux<TitleRegistry> findAllValidTitlesAfter(Long afterId, int limit);
+
     @Query("DELETE FROM title_registry WHERE collateral_id = :collateralId")
     Mono<Void> deleteByCollateralId(String collateralId);
 }
@@ -1,25 +1,41 @@
 package com.rjtmahinay.collateral.service;
 
+import com.rjtmahinay.collateral.config.CollateralProperties;
 import com.rjtmahinay.collateral.dto.AutoLoanDto.*;
 import com.rjtmahinay.collateral.model.AutoValuation;
 import com.rjtmahinay.collateral.model.CollateralType;
+import com.rjtmahinay.collateral.model.MarketStats;
 import com.rjtmahinay.collateral.repository.AutoValuationRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AutoLoanValuationService {
 
+    private static final BigDecimal LOW_RISK_MAX_LTV = BigDecimal.valueOf(LtvBatchCalculator.LOW_RISK_MAX_BP, 4);
+    private static final BigDecimal MEDIUM_RISK_MAX_LTV = BigDecimal.valueOf(LtvBatchCalculator.MEDIUM_RISK_MAX_BP, 4);
+    private static final BigDecimal APPROVAL_MAX_LTV = BigDecimal.valueOf(LtvBatchCalculator.APPROVAL_MAX_BP, 4);
+    private static final BigDecimal MAX_LTV_FACTOR = BigDecimal.valueOf(85, 2);
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
     private final AutoValuationRepository autoValuationRepository;
+    private final MarketStatsService marketStatsService;
+    private final LtvBatchCalculator ltvBatchCalculator;
+    private final DepreciationForecaster depreciationForecaster;
+    private final CollateralProperties properties;
 
     public Mono<VehicleAppraisalResponse> performVehicleAppraisal(VehicleAppraisalRequest request) {
         log.info("Processing vehicle appraisal for VIN: {} - {} {} {}",
@@ -34,6 +50,9 @@ public class AutoLoanValuationService {
                 .collateralId(collateralId)
                 .type(CollateralType.VEHICLE.name())
                 .location(request.getZipCode())
+                .make(request.getMake())
+                .model(request.getModel())
+                .modelYear(request.getYear())
                 .description(buildVehicleDescription(request))
                 .status(AutoValuation.ValuationStatus.VALUATION_COMPLETED)
                 .estimatedValue(calculateEstimatedValue(request.getYear(), request.getMake(), request.getModel()))
@@ -47,24 +66,39 @@ public class AutoLoanValuationService {
                 .message("Vehicle appraisal completed successfully")
                 .build();
 
-        return autoValuationRepository.save(autoValuation)
+        return marketStatsService.saveValuation(autoValuation)
                 .map(valuation -> convertAutoValuationToVehicleAppraisalResponse(valuation, request))
                 .onErrorReturn(buildErrorResponse(collateralId));
     }
 
     public Mono<VehicleMarketAnalysisResponse> analyzeVehicleMarket(String make, String model, Integer year,
             String zipCode) {
-        log.info("Analyzing vehicle market for {} {} {} in {}", year, make, model, zipCode);
-
-        return autoValuationRepository
-                .findByTypeAndLocationOrderByValuationDateDesc(CollateralType.VEHICLE.name(), zipCode)
-                .collectList()
-                .map(valuations -> {
-                    BigDecimal averageValue = valuations.stream()
-                            .map(AutoValuation::getEstimatedValue)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add)
-                            .divide(BigDecimal.valueOf(Math.max(1, valuations.size())), 2,
-                                    java.math.RoundingMode.HALF_UP);
+        log.debug("Analyzing vehicle market for {} {} {} in {}", year, make, model, zipCode);
+
+        // Count, average, min and max come from the bucket's monthly rows in market_stats, so their cost depends
+        // on months of history, not valuations; only the median reads the bucket's valuations
+        String type = CollateralType.VEHICLE.name();
+        Mono<Optional<BigDecimal>> median = marketStatsService.getMedianValue(type, zipCode, make, model, year)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty());
+
+        return Mono.zip(marketStatsService.getBucketHistory(type, zipCode, make, model, year).collectList(), median)
+                .map(tuple -> {
+                    List<MarketStats> periods = tuple.getT1();
+                    long sampleCount = 0;
+                    BigDecimal valueSum = BigDecimal.ZERO;
+                    BigDecimal minValue = null;
+                    BigDecimal maxValue = null;
+                    for (MarketStats period : periods) {
+                        sampleCount += period.getSampleCount();
+                        valueSum = valueSum.add(period.getValueSum());
+                        minValue = minValue == null || period.getMinValue().compareTo(minValue) < 0
+                                ? period.getMinValue()
+                                : minValue;
+                        maxValue = maxValue == null || period.getMaxValue().compareTo(maxValue) > 0
+                                ? period.getMaxValue()
+                                : maxValue;
+                    }
 
                     return VehicleMarketAnalysisResponse.builder()
                             .make(make)
@@ -73,8 +107,13 @@ public class AutoLoanValuationService {
                             .zipCode(zipCode)
                             .status("SUCCESS")
                             .message("Vehicle market analysis completed")
-                            .averageMarketValue(averageValue)
-                            .priceChangePercent(5.2) // Mock value
+                            .sampleCount(sampleCount)
+                            .averageMarketValue(valueSum.divide(BigDecimal.valueOf(Math.max(1, sampleCount)), 2,
+                                    java.math.RoundingMode.HALF_UP))
+                            .minMarketValue(minValue)
+                            .maxMarketValue(maxValue)
+                            .medianMarketValue(tuple.getT2().orElse(null))
+                            .priceChangePercent(calculatePriceChangePercent(periods))
                             .demandLevel(determineDemandLevel(make))
                             .averageDaysOnMarket(calculateAverageDaysOnMarket(make, model))
                             .seasonalTrend(getCurrentSeasonalTrend())
@@ -84,7 +123,7 @@ public class AutoLoanValuationService {
     }
 
     public Mono<VehicleComparableSalesResponse> findComparableVehicleSales(VehicleComparableRequest request) {
-        log.info("Finding comparable sales for {} {} {} with {} miles",
+        log.debug("Finding comparable sales for {} {} {} with {} miles",
                 request.getYear(), request.getMake(), request.getModel(), request.getMileage());
 
         BigDecimal estimatedValue = calculateEstimatedValue(request.getYear(), request.getMake(), request.getModel());
@@ -114,7 +153,7 @@ public class AutoLoanValuationService {
     }
 
     public Mono<LoanToValueResponse> calculateAutoLoanLTV(LoanToValueRequest request) {
-        log.info("Calculating auto loan LTV for collateral: {} - Loan: {}, Value: {}",
+        log.debug("Calculating auto loan LTV for collateral: {} - Loan: {}, Value: {}",
                 request.getCollateralId(), request.getLoanAmount(), request.getVehicleValue());
 
         if (request.getVehicleValue().compareTo(BigDecimal.ZERO) <= 0) {
@@ -133,7 +172,7 @@ public class AutoLoanValuationService {
                 .loanAmount(request.getLoanAmount())
                 .vehicleValue(request.getVehicleValue())
                 .ltvRatio(ltvRatio)
-                .ltvPercentage(ltvRatio.multiply(BigDecimal.valueOf(100)))
+                .ltvPercentage(ltvRatio.multiply(HUNDRED))
                 .riskAssessment(assessAutoLoanRisk(ltvRatio))
                 .approved(isAutoLoanApproved(ltvRatio))
                 .maxRecommendedLoan(calculateMaxAutoLoan(request.getVehicleValue()))
@@ -143,25 +182,70 @@ public class AutoLoanValuationService {
                 .build());
     }
 
+    /**
+     * Computes LTV for a stream of requests, in order. Requests are cut into chunks that are computed on the
+     * parallel scheduler, {@code collateral.ltv.parallelism} at a time.
+     */
+    public Flux<LoanToValueResponse> calculateAutoLoanLTVs(Flux<LoanToValueRequest> requests) {
+        log.debug("Calculating auto loan LTV batch");
+
+        CollateralProperties.Ltv ltv = properties.getLtv();
+        return requests.buffer(ltv.getChunkSize())
+                .flatMapSequential(chunk -> Mono.fromCallable(() -> ltvBatchCalculator.calculate(chunk))
+                        .subscribeOn(Schedulers.parallel()), ltv.getParallelism(), 1)
+                .flatMapIterable(Function.identity());
+    }
+
     public Mono<DepreciationForecastResponse> forecastVehicleDepreciation(DepreciationForecastRequest request) {
-        log.info("Forecasting vehicle depreciation for {} {} {} over {} months",
+        log.debug("Forecasting vehicle depreciation for {} {} {} over {} months",
                 request.getYear(), request.getMake(), request.getModel(), request.getForecastMonths());
 
-        List<MonthlyDepreciation> forecast = generateVehicleDepreciationForecast(
-                request.getCurrentValue(),
+        return Mono.just(buildDepreciationForecast(request, LocalDateTime.now()));
+    }
+
+    /**
+     * Forecasts every vehicle of a portfolio, streaming one response per request in order; invalid requests
+     * yield an ERROR response instead of failing the stream.
+     */
+    public Flux<DepreciationForecastResponse> forecastPortfolioDepreciation(Flux<DepreciationForecastRequest> requests) {
+        log.debug("Forecasting portfolio depreciation");
+
+        LocalDateTime forecastDate = LocalDateTime.now();
+        return requests.map(request -> buildDepreciationForecast(request, forecastDate));
+    }
+
+    private DepreciationForecastResponse buildDepreciationForecast(DepreciationForecastRequest request,
+            LocalDateTime forecastDate) {
+        BigDecimal currentValue = request.getCurrentValue();
+        if (currentValue == null || currentValue.signum() <= 0) {
+            return buildForecastError(request, "Current value must be greater than zero");
+        }
+        if (request.getForecastMonths() == null || request.getForecastMonths() <= 0) {
+            return buildForecastError(request, "Forecast months must be greater than zero");
+        }
+        if (request.getYear() == null) {
+            return buildForecastError(request, "Year is required");
+        }
+        if (request.getMake() == null || request.getMake().isBlank()) {
+            return buildForecastError(request, "Make is required");
+        }
+
+        List<MonthlyDepreciation> forecast = depreciationForecaster.forecast(
+                currentValue,
                 request.getForecastMonths(),
-                request.getYear(),
-                request.getMake());
+                getVehicleDepreciationRate(request.getYear(), request.getMake()),
+                request.getSampleInterval() != null ? request.getSampleInterval() : 1,
+                Boolean.TRUE.equals(request.getSummaryOnly()));
 
         BigDecimal finalValue = forecast.get(forecast.size() - 1).getProjectedValue();
-        BigDecimal totalDepreciation = request.getCurrentValue().subtract(finalValue);
+        BigDecimal totalDepreciation = currentValue.subtract(finalValue);
         BigDecimal depreciationPercentage = totalDepreciation
-                .divide(request.getCurrentValue(), 4, java.math.RoundingMode.HALF_UP)
-                .multiply(BigDecimal.valueOf(100));
+                .divide(currentValue, 4, java.math.RoundingMode.HALF_UP)
+                .multiply(HUNDRED);
 
-        return Mono.just(DepreciationForecastResponse.builder()
+        return DepreciationForecastResponse.builder()
                 .collateralId(request.getCollateralId())
-                .currentValue(request.getCurrentValue())
+                .currentValue(currentValue)
                 .projectedValue(finalValue)
                 .totalDepreciation(totalDepreciation)
                 .depreciationPercentage(depreciationPercentage)
@@ -169,8 +253,17 @@ public class AutoLoanValuationService {
                 .monthlyForecast(forecast)
                 .status("SUCCESS")
                 .message("Vehicle depreciation forecast completed")
-                .forecastDate(LocalDateTime.now())
-                .build());
+                .forecastDate(forecastDate)
+                .build();
+    }
+
+    private DepreciationForecastResponse buildForecastError(DepreciationForecastRequest request, String message) {
+        return DepreciationForecastResponse.builder()
+                .collateralId(request.getCollateralId())
+                .forecastMonths(request.getForecastMonths())
+                .status("ERROR")
+                .message(message)
+                .build();
     }
 
     // Private helper methods
@@ -225,6 +318,27 @@ public class AutoLoanValuationService {
         return marketValue.multiply(BigDecimal.valueOf(0.80));
     }
 
+    // Change of the latest month's average over the month before it; periods are ordered newest first
+    private Double calculatePriceChangePercent(List<MarketStats> periods) {
+        if (periods.size() < 2) {
+            return null;
+        }
+        BigDecimal latest = averageOf(periods.get(0));
+        BigDecimal previous = averageOf(periods.get(1));
+        if (previous.signum() == 0) {
+            return null;
+        }
+        return latest.subtract(previous)
+                .multiply(BigDecimal.valueOf(100))
+                .divide(previous, 2, java.math.RoundingMode.HALF_UP)
+                .doubleValue();
+    }
+
+    private BigDecimal averageOf(MarketStats period) {
+        return period.getValueSum().divide(BigDecimal.valueOf(period.getSampleCount()), 2,
+                java.math.RoundingMode.HALF_UP);
+    }
+
     private String determineDemandLevel(String make) {
         // Popular auto brands have higher demand
         if (List.of("TOYOTA", "HONDA", "LEXUS", "ACURA").contains(make.toUpperCase())) {
@@ -276,41 +390,21 @@ public class AutoLoanValuationService {
     }
 
     private String assessAutoLoanRisk(BigDecimal ltvRatio) {
-        if (ltvRatio.compareTo(BigDecimal.valueOf(0.70)) <= 0)
+        if (ltvRatio.compareTo(LOW_RISK_MAX_LTV) <= 0)
             return "LOW_RISK";
-        if (ltvRatio.compareTo(BigDecimal.valueOf(0.80)) <= 0)
+        if (ltvRatio.compareTo(MEDIUM_RISK_MAX_LTV) <= 0)
             return "MEDIUM_RISK";
-        if (ltvRatio.compareTo(BigDecimal.valueOf(0.85)) <= 0)
+        if (ltvRatio.compareTo(APPROVAL_MAX_LTV) <= 0)
             return "HIGH_RISK";
         return "EXCESSIVE_RISK";
     }
 
     private Boolean isAutoLoanApproved(BigDecimal ltvRatio) {
-        return ltvRatio.compareTo(BigDecimal.valueOf(0.85)) <= 0; // Max 85% LTV for auto loans
+        return ltvRatio.compareTo(APPROVAL_MAX_LTV) <= 0; // Max 85% LTV for auto loans
     }
 
     private BigDecimal calculateMaxAutoLoan(BigDecimal vehicleValue) {
-        return vehicleValue.multiply(BigDecimal.valueOf(0.85)); // 85% max LTV
-    }
-
-    private List<MonthlyDepreciation> generateVehicleDepreciationForecast(BigDecimal currentValue, Integer months,
-            Integer year, String make) {
-        List<MonthlyDepreciation> forecast = new java.util.ArrayList<>();
-        BigDecimal value = currentValue;
-
-        // Vehicle-specific depreciation rates
-        double monthlyDepreciationRate = getVehicleDepreciationRate(year, make);
-
-        for (int i = 1; i <= months; i++) {
-            value = value.multiply(BigDecimal.valueOf(1 - monthlyDepreciationRate));
-            forecast.add(MonthlyDepreciation.builder()
-                    .month(i)
-                    .projectedValue(value)
-                    .depreciationAmount(currentValue.subtract(value))
-                    .build());
-        }
-
-        return forecast;
+        return vehicleValue.multiply(MAX_LTV_FACTOR); // 85% max LTV
     }
 
     private double getVehicleDepreciationRate(Integer year, String make) {
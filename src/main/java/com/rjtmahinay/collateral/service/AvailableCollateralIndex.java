@@ -0,0 +1,317 @@
+package com.rjtmahinay.collateral.service;
+
+import com.rjtmahinay.collateral.config.CollateralProperties;
+import com.rjtmahinay.collateral.model.Collateral;
+import com.rjtmahinay.collateral.model.CollateralStatus;
+import com.rjtmahinay.collateral.repository.CollateralRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory copy of every AVAILABLE collateral, grouped per customer and sorted by available value in cents, so
+ * {@link #find} answers the available-collateral query with a binary search instead of a database round trip.
+ * <p>
+ * The index is loaded once the application is ready and serves queries only after that. Every collateral write
+ * already ends in {@link CollateralCache#evict}, which hands the collateralId to {@link #refresh} after commit; the
+ * written rows are re-read in batches and applied in submission order, so the index trails committed writes by
+ * one read. Writes made outside the service (SQL, the bulk import) are picked up by {@link #verify}, which
+ * compares the index with the table every {@code verify-interval} and repairs any difference. Readers only see
+ * immutable per-customer snapshots; mutations are serialized.
+ */
+@Component
+@Slf4j
+public class AvailableCollateralIndex {
+
+    private static final BigDecimal MIN_CENTS = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal MAX_CENTS = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    private final CollateralRepository collateralRepository;
+    private final KeysetPaginator keysetPaginator;
+    private final CollateralProperties properties;
+    private final Counter mismatches;
+    private final AtomicBoolean ready = new AtomicBoolean();
+    private final Sinks.Many<String> refreshes = Sinks.many().unicast().onBackpressureBuffer();
+    private final Map<String, CustomerEntries> byCustomer = new ConcurrentHashMap<>();
+    // collateralId -> customerId of every indexed collateral
+    private final Map<String, String> customerOf = new ConcurrentHashMap<>();
+
+    public AvailableCollateralIndex(CollateralRepository collateralRepository, KeysetPaginator keysetPaginator,
+            CollateralProperties properties, MeterRegistry meterRegistry) {
+        this.collateralRepository = collateralRepository;
+        this.keysetPaginator = keysetPaginator;
+        this.properties = properties;
+
+        this.mismatches = Counter.builder("collateral.available.index.mismatches")
+                .description("Index entries found out of date and repaired by the consistency check")
+                .register(meterRegistry);
+        meterRegistry.gauge("collateral.available.index.size", customerOf, Map::size);
+
+        refreshes.asFlux()
+                .bufferTimeout(properties.getAvailableIndex().getRefreshBatchSize(), Duration.ofMillis(5))
+                .concatMap(collateralIds -> reload(new HashSet<>(collateralIds))
+                        .onErrorResume(error -> {
+                            log.warn("Failed to refresh available collateral index for {} - left to the consistency check",
+                                    collateralIds, error);
+                            return Mono.just(0L);
+                        }))
+                .subscribe();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!properties.getAvailableIndex().isEnabled()) {
+            return;
+        }
+        log.info("Loading available collateral index");
+        long start = System.nanoTime();
+        streamAvailable()
+                .doOnNext(this::apply)
+                .then()
+                .subscribe(
+                        v -> {
+                        },
+                        error -> log.error("Failed to load available collateral index - queries stay on the database",
+                                error),
+                        () -> {
+                            ready.set(true);
+                            log.info("Available collateral index loaded: {} collateral(s) of {} customer(s) in {}ms",
+                                    customerOf.size(), byCustomer.size(),
+                                    Duration.ofNanos(System.nanoTime() - start).toMillis());
+                        });
+    }
+
+    public boolean isReady() {
+        return ready.get();
+    }
+
+    /**
+     * Returns the customer's AVAILABLE collaterals with an available value of at least {@code minValue}, lowest
+     * value first, as copies the caller may mutate.
+     */
+    public Flux<Collateral> find(String customerId, BigDecimal minValue) {
+        CustomerEntries entries = byCustomer.get(customerId);
+        if (entries == null) {
+            return Flux.empty();
+        }
+        BigDecimal minCents = minValue.movePointRight(2).setScale(0, RoundingMode.CEILING);
+        if (minCents.compareTo(MAX_CENTS) > 0) {
+            return Flux.empty();
+        }
+        int from = minCents.compareTo(MIN_CENTS) < 0 ? 0 : entries.lowerBound(minCents.longValue());
+        return Flux.fromIterable(Arrays.asList(entries.rows()).subList(from, entries.rows().length))
+                .map(collateral -> collateral.toBuilder().build());
+    }
+
+    /**
+     * Queues the collateral to be re-read from the database; called once its write has committed.
+     */
+    public void refresh(String collateralId) {
+        if (properties.getAvailableIndex().isEnabled()) {
+            refreshes.emitNext(collateralId, Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+        }
+    }
+
+    /**
+     * Indexes a collateral the caller has just inserted and committed, without reading it back.
+     */
+    public void put(Collateral collateral) {
+        if (properties.getAvailableIndex().isEnabled()) {
+            apply(collateral);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${collateral.available-index.verify-interval:PT10M}", fixedDelayString = "${collateral.available-index.verify-interval:PT10M}")
+    public Mono<Long> scheduledVerify() {
+        return ready.get() ? verify() : Mono.empty();
+    }
+
+    /**
+     * Compares the index with the collateral table, repairs every entry that is missing, stale or no longer
+     * available, and returns the number repaired. Rows written while the check runs may be counted once even
+     * though their refresh was already on its way.
+     */
+    public Mono<Long> verify() {
+        return Mono.defer(() -> {
+            log.info("Verifying available collateral index");
+            Set<String> seen = new HashSet<>();
+
+            return streamAvailable()
+                    .filter(collateral -> {
+                        seen.add(collateral.getCollateralId());
+                        return apply(collateral);
+                    })
+                    .doOnNext(collateral -> log.warn("Available collateral index was out of date for collateral: {}",
+                            collateral.getCollateralId()))
+                    .count()
+                    .flatMap(stale -> {
+                        Set<String> unseen = new HashSet<>(customerOf.keySet());
+                        unseen.removeAll(seen);
+                        return Flux.fromIterable(unseen)
+                                .buffer(properties.getAvailableIndex().getRefreshBatchSize())
+                                .concatMap(collateralIds -> reload(new HashSet<>(collateralIds)))
+                                .reduce(stale, Long::sum);
+                    })
+                    .doOnSuccess(count -> {
+                        mismatches.increment(count);
+                        log.info("Available collateral index verified - {} entr(ies) repaired", count);
+                    });
+        });
+    }
+
+    private Flux<Collateral> streamAvailable() {
+        return keysetPaginator.stream(0L, collateralRepository::findAvailableCollateralsAfter, Collateral::getId);
+    }
+
+    // Applies the current rows of the given collaterals; ids without a row were deleted
+    private Mono<Long> reload(Set<String> collateralIds) {
+        return collateralRepository.findByCollateralIdIn(collateralIds)
+                .collectList()
+                .map(rows -> {
+                    Set<String> missing = new HashSet<>(collateralIds);
+                    long changed = 0;
+                    for (Collateral row : rows) {
+                        missing.remove(row.getCollateralId());
+                        changed += apply(row) ? 1 : 0;
+                    }
+                    for (String collateralId : missing) {
+                        changed += remove(collateralId) ? 1 : 0;
+                    }
+                    return changed;
+                });
+    }
+
+    // Brings the collateral's entry in line with the row, ignoring rows older than the indexed version
+    private synchronized boolean apply(Collateral row) {
+        String collateralId = row.getCollateralId();
+        Collateral current = indexed(collateralId);
+        if (current != null && version(current) > version(row)) {
+            return false;
+        }
+        boolean indexable = row.getStatus() == CollateralStatus.AVAILABLE && row.getAvailableValue() != null
+                && row.getCustomerId() != null;
+        if (current != null && indexable && version(current) == version(row)
+                && current.getCustomerId().equals(row.getCustomerId())
+                && current.getAvailableValue().compareTo(row.getAvailableValue()) == 0) {
+            return false;
+        }
+
+        boolean changed = remove(collateralId);
+        if (indexable) {
+            Collateral copy = row.toBuilder().build();
+            byCustomer.merge(copy.getCustomerId(), CustomerEntries.of(copy),
+                    (entries, added) -> entries.with(copy));
+            customerOf.put(collateralId, copy.getCustomerId());
+            changed = true;
+        }
+        return changed;
+    }
+
+    private synchronized boolean remove(String collateralId) {
+        String customerId = customerOf.remove(collateralId);
+        if (customerId == null) {
+            return false;
+        }
+        byCustomer.computeIfPresent(customerId, (key, entries) -> entries.without(collateralId));
+        return true;
+    }
+
+    private Collateral indexed(String collateralId) {
+        String customerId = customerOf.get(collateralId);
+        CustomerEntries entries = customerId != null ? byCustomer.get(customerId) : null;
+        return entries != null ? entries.get(collateralId) : null;
+    }
+
+    private static long version(Collateral collateral) {
+        return collateral.getVersion() != null ? collateral.getVersion() : -1L;
+    }
+
+    private static long toCents(BigDecimal value) {
+        return value.movePointRight(2).setScale(0, RoundingMode.FLOOR).longValueExact();
+    }
+
+    /**
+     * One customer's collaterals sorted by available value; replaced as a whole on every change.
+     */
+    private record CustomerEntries(long[] cents, Collateral[] rows) {
+
+        static CustomerEntries of(Collateral row) {
+            return new CustomerEntries(new long[] { toCents(row.getAvailableValue()) }, new Collateral[] { row });
+        }
+
+        int lowerBound(long key) {
+            int low = 0;
+            int high = cents.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cents[mid] < key) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        Collateral get(String collateralId) {
+            for (Collateral row : rows) {
+                if (row.getCollateralId().equals(collateralId)) {
+                    return row;
+                }
+            }
+            return null;
+        }
+
+        CustomerEntries with(Collateral row) {
+            long value = toCents(row.getAvailableValue());
+            int at = lowerBound(value);
+            long[] newCents = new long[cents.length + 1];
+            Collateral[] newRows = new Collateral[rows.length + 1];
+            System.arraycopy(cents, 0, newCents, 0, at);
+            System.arraycopy(rows, 0, newRows, 0, at);
+            newCents[at] = value;
+            newRows[at] = row;
+            System.arraycopy(cents, at, newCents, at + 1, cents.length - at);
+            System.arraycopy(rows, at, newRows, at + 1, rows.length - at);
+            return new CustomerEntries(newCents, newRows);
+        }
+
+        // Returns null once the last collateral is gone, which drops the customer from the map
+        CustomerEntries without(String collateralId) {
+            int at = 0;
+            while (at < rows.length && !rows[at].getCollateralId().equals(collateralId)) {
+                at++;
+            }
+            if (at == rows.length) {
+                return this;
+            }
+            if (rows.length == 1) {
+                return null;
+            }
+            long[] newCents = new long[cents.length - 1];
+            Collateral[] newRows = new Collateral[rows.length - 1];
+            System.arraycopy(cents, 0, newCents, 0, at);
+            System.arraycopy(rows, 0, newRows, 0, at);
+            System.arraycopy(cents, at + 1, newCents, at, cents.length - at - 1);
+            System.arraycopy(rows, at + 1, newRows, at, rows.length - at - 1);
+            return new CustomerEntries(newCents, newRows);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.rjtmahinay.collateral.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rjtmahinay.collateral.config.CollateralProperties;
+import com.rjtmahinay.collateral.model.ChangeEvent;
+import com.rjtmahinay.collateral.repository.ChangeEventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Transactional outbox for collateral and encumbrance mutations. Writers record events inside their own
+ * transaction, so an event exists exactly when its change committed; consumers tail the table by id offset
+ * instead of re-scanning the collateral table.
+ * <p>
+ * Ids are handed out when a row is inserted but become visible when its transaction commits, so a later id can
+ * be visible before an earlier one. The feed therefore only moves its offset across consecutive ids and stops at
+ * the first missing one until that id commits. A missing id is given up as rolled back once the event after it
+ * is older than {@code gap-timeout}: the transaction holding it took its id before that event was written, so it
+ * has been open at least that long.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChangeEventService {
+
+    public static final String COLLATERAL = "COLLATERAL";
+    public static final String ENCUMBRANCE = "ENCUMBRANCE";
+
+    private final ChangeEventRepository changeEventRepository;
+    private final ObjectMapper objectMapper;
+    private final CollateralProperties properties;
+    private final KeysetPaginator keysetPaginator;
+
+    public Mono<Void> record(String aggregateType, String aggregateId, String eventType, Object payload) {
+        return Mono.fromCallable(() -> newEvent(aggregateType, aggregateId, eventType, payload, LocalDateTime.now()))
+                .flatMap(changeEventRepository::save)
+                .then();
+    }
+
+    /**
+     * Records one event per aggregate with a single multi-row INSERT.
+     */
+    public <T> Mono<Void> recordAll(String aggregateType, String eventType, List<T> aggregates,
+            Function<T, String> idOf) {
+        if (aggregates.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> {
+                    LocalDateTime now = LocalDateTime.now();
+                    List<ChangeEvent> events = new ArrayList<>(aggregates.size());
+                    for (T aggregate : aggregates) {
+                        events.add(newEvent(aggregateType, idOf.apply(aggregate), eventType, aggregate, now));
+                    }
+                    return events;
+                })
+                .flatMap(changeEventRepository::insertAll)
+                .then();
+    }
+
+    /**
+     * Streams every event after {@code afterId} and then keeps tailing the outbox, one bounded page per query,
+     * polling every {@code collateral.change-events.poll-interval} once caught up or held at a missing id.
+     */
+    public Flux<ChangeEvent> streamChanges(Long afterId) {
+        log.debug("Streaming change events after id: {}", afterId);
+
+        CollateralProperties.ChangeEvents config = properties.getChangeEvents();
+        return fetchPage(keysetPaginator.afterId(afterId), config)
+                .expand(page -> page.complete()
+                        ? fetchPage(page.lastId(), config)
+                        : Mono.delay(config.getPollInterval()).then(fetchPage(page.lastId(), config)))
+                .concatMapIterable(Page::events, 1);
+    }
+
+    @Scheduled(initialDelayString = "PT1H", fixedDelayString = "PT1H")
+    public Mono<Integer> purgeExpiredEvents() {
+        return Mono.defer(() -> changeEventRepository
+                        .deleteOlderThan(LocalDateTime.now().minus(properties.getChangeEvents().getRetention())))
+                .doOnSuccess(deleted -> log.info("Purged {} change event(s) past retention", deleted));
+    }
+
+    private Mono<Page> fetchPage(long afterId, CollateralProperties.ChangeEvents config) {
+        return Flux.defer(() -> changeEventRepository.findAfter(afterId, config.getPageSize()))
+                .collectList()
+                .map(events -> {
+                    LocalDateTime gapCutoff = LocalDateTime.now().minus(config.getGapTimeout());
+                    long lastId = afterId;
+                    int visible = 0;
+                    for (ChangeEvent event : events) {
+                        if (event.getId() != lastId + 1 && !event.getCreatedAt().isBefore(gapCutoff)) {
+                            log.debug("Change feed waiting for event id(s) {} to {} to commit", lastId + 1,
+                                    event.getId() - 1);
+                            break;
+                        }
+                        lastId = event.getId();
+                        visible++;
+                    }
+                    // A full page read to its end can be followed straight away; anything else waits a poll
+                    return new Page(lastId, events.subList(0, visible),
+                            visible == events.size() && events.size() == config.getPageSize());
+                });
+    }
+
+    private ChangeEvent newEvent(String aggregateType, String aggregateId, String eventType, Object payload,
+            LocalDateTime now) throws JsonProcessingException {
+        return ChangeEvent.builder()
+                .aggregateType(aggregateType)
+                .aggregateId(aggregateId)
+                .eventType(eventType)
+                .payload(payload != null ? objectMapper.writeValueAsString(payload) : null)
+                .createdAt(now)
+                .build();
+    }
+
+    private record Page(long lastId, List<ChangeEvent> events, boolean complete) {
+    }
+}
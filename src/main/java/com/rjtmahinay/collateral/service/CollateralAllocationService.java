@@ -0,0 +1,280 @@
+package com.rjtmahinay.collateral.service;
+
+import com.rjtmahinay.collateral.config.CollateralProperties;
+import com.rjtmahinay.collateral.dto.AllocationDto.AllocationRequest;
+import com.rjtmahinay.collateral.dto.AllocationDto.AllocationResult;
+import com.rjtmahinay.collateral.dto.AllocationDto.Pledge;
+import com.rjtmahinay.collateral.dto.LienPosition;
+import com.rjtmahinay.collateral.model.Collateral;
+import com.rjtmahinay.collateral.model.CollateralStatus;
+import com.rjtmahinay.collateral.model.Encumbrance;
+import com.rjtmahinay.collateral.model.EncumbranceStatus;
+import com.rjtmahinay.collateral.model.EncumbranceType;
+import com.rjtmahinay.collateral.service.CollateralAllocator.Candidate;
+import com.rjtmahinay.collateral.service.CollateralAllocator.Plan;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.RetryBackoffSpec;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Secures a loan with the customer's collateral in one call: loads the pledgeable collateral, lets
+ * {@link CollateralAllocator} choose the set, and posts one encumbrance per chosen collateral atomically. Each
+ * collateral counts towards the loan at its available value less the haircut for its type, and the pledges must
+ * cover {@code loanAmount / maxLtv}. Every pledge but the smallest is for the collateral's whole available value;
+ * the smallest is cut down to what is still needed. Unencumbered collateral posts a first lien; with
+ * {@code maxLienRank} above 1, encumbered collateral with value left joins the pool as a junior lien.
+ * <p>
+ * A preview reads the available collateral from {@link AvailableCollateralIndex}, which trails committed writes.
+ * An allocation plans from the database instead and posts each pledge against the collateral version it was
+ * planned from, so a collateral written in between fails the posting and the allocation is planned again.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CollateralAllocationService {
+
+    public static final String PROPOSED = "PROPOSED";
+    public static final String ALLOCATED = "ALLOCATED";
+    public static final String INSUFFICIENT_COLLATERAL = "INSUFFICIENT_COLLATERAL";
+
+    private static final BigDecimal ONE_CENT = new BigDecimal("0.01");
+
+    private final CollateralService collateralService;
+    private final EncumbranceService encumbranceService;
+    private final CollateralAllocator collateralAllocator;
+    private final RetryBackoffSpec versionConflictRetry;
+    private final CollateralProperties properties;
+
+    /**
+     * Returns the pledges {@link #allocate} would post, without posting them.
+     */
+    public Mono<AllocationResult> previewAllocation(AllocationRequest request) {
+        log.debug("Previewing allocation for customer: {} - loan: {}, amount: {}", request.getCustomerId(),
+                request.getLoanId(), request.getLoanAmount());
+        return plan(request, true).map(Planned::result);
+    }
+
+    /**
+     * Chooses and posts the pledges. The plan is read from the database, and a collateral written between
+     * planning and posting fails the posting on its version, in which case the allocation is planned again
+     * against fresh balances.
+     */
+    public Mono<AllocationResult> allocate(AllocationRequest request) {
+        log.info("Allocating collateral for customer: {} - loan: {}, amount: {}", request.getCustomerId(),
+                request.getLoanId(), request.getLoanAmount());
+
+        return Mono.defer(() -> plan(request, false))
+                .flatMap(planned -> {
+                    AllocationResult result = planned.result();
+                    if (!PROPOSED.equals(result.getStatus())) {
+                        return Mono.just(result);
+                    }
+                    return encumbranceService
+                            .createEncumbrancesAtomically(toEncumbrances(request, result), planned.versions())
+                            .map(encumbrances -> {
+                                result.setStatus(ALLOCATED);
+                                result.setMessage("Pledged " + encumbrances.size() + " collateral(s)");
+                                result.setEncumbrances(encumbrances);
+                                return result;
+                            });
+                })
+                .retryWhen(versionConflictRetry)
+                .doOnSuccess(result -> log.info("Allocation for loan: {} completed - status: {}", request.getLoanId(),
+                        result.getStatus()));
+    }
+
+    private Mono<Planned> plan(AllocationRequest request, boolean fromIndex) {
+        String violation = validate(request);
+        if (violation != null) {
+            return Mono.error(new IllegalArgumentException(violation));
+        }
+        CollateralProperties.Allocation config = properties.getAllocation();
+        BigDecimal maxLtv = request.getMaxLtv() != null && request.getMaxLtv().compareTo(config.getMaxLtv()) < 0
+                ? request.getMaxLtv()
+                : config.getMaxLtv();
+        long requiredCents = toCents(request.getLoanAmount().divide(maxLtv, 2, RoundingMode.CEILING));
+
+        return loadPledgeable(request, fromIndex)
+                .map(pledgeable -> {
+                    List<Candidate> candidates = new ArrayList<>(pledgeable.size());
+                    Map<String, PledgeableCollateral> byId = new HashMap<>();
+                    for (PledgeableCollateral collateral : pledgeable) {
+                        candidates.add(new Candidate(collateral.collateral().getCollateralId(),
+                                toCents(lendingValue(collateral.collateral())), collateral.lienRank()));
+                        byId.put(collateral.collateral().getCollateralId(), collateral);
+                    }
+                    Plan plan = collateralAllocator.allocate(candidates, requiredCents, config.getSearchBudget());
+
+                    AllocationResult.AllocationResultBuilder result = AllocationResult.builder()
+                            .customerId(request.getCustomerId())
+                            .loanId(request.getLoanId())
+                            .loanAmount(request.getLoanAmount())
+                            .maxLtv(maxLtv)
+                            .requiredValue(BigDecimal.valueOf(requiredCents, 2))
+                            .candidateCount(candidates.size());
+                    if (plan == null) {
+                        return new Planned(result.status(INSUFFICIENT_COLLATERAL)
+                                .message("Pledgeable collateral does not cover the loan at the maximum LTV")
+                                .pledges(List.of())
+                                .build(), Map.of());
+                    }
+
+                    List<Pledge> pledges = toPledges(plan, byId, requiredCents);
+                    Map<String, Long> versions = new HashMap<>();
+                    for (Pledge pledge : pledges) {
+                        versions.put(pledge.getCollateralId(),
+                                byId.get(pledge.getCollateralId()).collateral().getVersion());
+                    }
+                    return new Planned(result.status(PROPOSED)
+                            .message("Proposed " + pledges.size() + " pledge(s)")
+                            .allocatedValue(pledges.stream().map(Pledge::getLendingValue)
+                                    .reduce(BigDecimal.ZERO, BigDecimal::add))
+                            .pledgedAmount(pledges.stream().map(Pledge::getAmount)
+                                    .reduce(BigDecimal.ZERO, BigDecimal::add))
+                            .searchNodes(plan.nodes())
+                            .optimal(plan.exhaustive())
+                            .pledges(pledges)
+                            .build(), versions);
+                });
+    }
+
+    private Mono<List<PledgeableCollateral>> loadPledgeable(AllocationRequest request, boolean fromIndex) {
+        String customerId = request.getCustomerId();
+        String currency = currency(request);
+        int maxLienRank = request.getMaxLienRank() != null
+                ? request.getMaxLienRank()
+                : properties.getAllocation().getMaxLienRank();
+
+        Flux<PledgeableCollateral> firstLiens = (fromIndex
+                ? collateralService.getAvailableCollaterals(customerId, ONE_CENT)
+                : collateralService.getAvailableCollateralsFromDatabase(customerId, ONE_CENT))
+                .map(collateral -> new PledgeableCollateral(collateral, 1));
+        Flux<PledgeableCollateral> juniorLiens = maxLienRank <= 1
+                ? Flux.empty()
+                : encumbranceService.getLienPositions(customerId)
+                        .collectMap(LienPosition::getCollateralId, LienPosition::getPriority)
+                        .flatMapMany(positions -> collateralService.getCollateralsByCustomerId(customerId)
+                                .filter(collateral -> collateral.getStatus() == CollateralStatus.ENCUMBERED
+                                        && collateral.getAvailableValue() != null
+                                        && collateral.getAvailableValue().signum() > 0)
+                                .map(collateral -> new PledgeableCollateral(collateral,
+                                        positions.getOrDefault(collateral.getCollateralId(), 0) + 1)))
+                        .filter(collateral -> collateral.lienRank() <= maxLienRank);
+
+        return Flux.concat(firstLiens, juniorLiens)
+                .filter(pledgeable -> currency.equals(pledgeable.collateral().getCurrency() != null
+                        ? pledgeable.collateral().getCurrency()
+                        : "USD"))
+                .collectList();
+    }
+
+    // Full available value for every pledge but the last, which only covers what is still missing
+    private List<Pledge> toPledges(Plan plan, Map<String, PledgeableCollateral> byId, long requiredCents) {
+        List<Pledge> pledges = new ArrayList<>(plan.selected().size());
+        long missingCents = requiredCents;
+        for (Candidate candidate : plan.selected()) {
+            Collateral collateral = byId.get(candidate.collateralId()).collateral();
+            BigDecimal haircut = haircut(collateral);
+            BigDecimal amount = collateral.getAvailableValue();
+            long lendingCents = candidate.lendingCents();
+            if (lendingCents > missingCents) {
+                lendingCents = missingCents;
+                amount = BigDecimal.valueOf(missingCents, 2)
+                        .divide(BigDecimal.ONE.subtract(haircut), 2, RoundingMode.CEILING)
+                        .min(amount);
+            }
+            missingCents -= lendingCents;
+            pledges.add(Pledge.builder()
+                    .collateralId(collateral.getCollateralId())
+                    .type(collateral.getType())
+                    .availableValue(collateral.getAvailableValue())
+                    .haircut(haircut)
+                    .lienRank(candidate.lienRank())
+                    .amount(amount)
+                    .lendingValue(BigDecimal.valueOf(lendingCents, 2))
+                    .build());
+        }
+        return pledges;
+    }
+
+    private List<Encumbrance> toEncumbrances(AllocationRequest request, AllocationResult result) {
+        LocalDateTime effectiveDate = request.getEffectiveDate() != null
+                ? request.getEffectiveDate()
+                : LocalDateTime.now();
+        EncumbranceType type = request.getEncumbranceType() != null
+                ? request.getEncumbranceType()
+                : EncumbranceType.LIEN;
+        return result.getPledges().stream()
+                .map(pledge -> Encumbrance.builder()
+                        .collateralId(pledge.getCollateralId())
+                        .loanId(request.getLoanId())
+                        .customerId(request.getCustomerId())
+                        .amount(pledge.getAmount())
+                        .currency(currency(request))
+                        .type(type)
+                        .status(EncumbranceStatus.ACTIVE)
+                        .effectiveDate(effectiveDate)
+                        .expiryDate(request.getExpiryDate())
+                        .priority(pledge.getLienRank())
+                        .createdBy(request.getCreatedBy())
+                        .description("Allocated to loan " + request.getLoanId())
+                        .build())
+                .toList();
+    }
+
+    private BigDecimal lendingValue(Collateral collateral) {
+        return collateral.getAvailableValue()
+                .multiply(BigDecimal.ONE.subtract(haircut(collateral)))
+                .setScale(2, RoundingMode.FLOOR);
+    }
+
+    private BigDecimal haircut(Collateral collateral) {
+        CollateralProperties.Allocation config = properties.getAllocation();
+        return config.getHaircuts().getOrDefault(collateral.getType(), config.getDefaultHaircut());
+    }
+
+    private String validate(AllocationRequest request) {
+        if (request.getCustomerId() == null || request.getCustomerId().isBlank()) {
+            return "customerId is required";
+        }
+        if (request.getLoanId() == null || request.getLoanId().isBlank()) {
+            return "loanId is required";
+        }
+        if (request.getLoanAmount() == null || request.getLoanAmount().signum() <= 0) {
+            return "loanAmount must be positive";
+        }
+        if (request.getMaxLtv() != null && request.getMaxLtv().signum() <= 0) {
+            return "maxLtv must be positive";
+        }
+        if (request.getMaxLienRank() != null && request.getMaxLienRank() < 1) {
+            return "maxLienRank must be at least 1";
+        }
+        return null;
+    }
+
+    private static String currency(AllocationRequest request) {
+        return request.getCurrency() != null ? request.getCurrency() : "USD";
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.CEILING).longValueExact();
+    }
+
+    private record PledgeableCollateral(Collateral collateral, int lienRank) {
+    }
+
+    // The plan and the version of each pledged collateral it was computed from
+    private record Planned(AllocationResult result, Map<String, Long> versions) {
+    }
+}
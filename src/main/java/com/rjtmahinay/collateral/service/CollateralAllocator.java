@@ -0,0 +1,183 @@
+package com.rjtmahinay.collateral.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Chooses the collaterals that secure a loan, given each candidate's lending value (available value after the
+ * haircut, in long cents) and the lien rank a new encumbrance on it would get. A plan covers the required value
+ * and minimizes, in order: the number of collaterals pledged, the sum of their lien ranks, and the surplus over
+ * the required value, so the largest assets stay free for later loans.
+ * <p>
+ * Taking the largest candidates first already gives the smallest possible count and is the starting plan. A
+ * depth-first branch and bound then looks for a more senior or tighter set of the same size, visiting at most
+ * {@code searchBudget} nodes; when the budget runs out the best plan found so far is returned.
+ */
+@Component
+public class CollateralAllocator {
+
+    public Plan allocate(List<Candidate> candidates, long requiredCents, int searchBudget) {
+        Candidate[] sorted = candidates.stream()
+                .filter(candidate -> candidate.lendingCents() > 0)
+                .sorted(Comparator.comparingLong(Candidate::lendingCents).reversed()
+                        .thenComparingInt(Candidate::lienRank))
+                .toArray(Candidate[]::new);
+        if (requiredCents <= 0) {
+            return new Plan(List.of(), 0L, 0, true);
+        }
+
+        long[] prefix = new long[sorted.length + 1];
+        for (int i = 0; i < sorted.length; i++) {
+            prefix[i + 1] = saturatedAdd(prefix[i], sorted[i].lendingCents());
+        }
+        if (prefix[sorted.length] < requiredCents) {
+            return null;
+        }
+
+        int count = 1;
+        while (prefix[count] < requiredCents) {
+            count++;
+        }
+        Search search = new Search(sorted, prefix, requiredCents, count, searchBudget);
+        search.run();
+
+        List<Candidate> selected = new ArrayList<>(count);
+        long lendingCents = 0;
+        for (int index : search.best) {
+            selected.add(sorted[index]);
+            lendingCents += sorted[index].lendingCents();
+        }
+        return new Plan(selected, lendingCents, search.nodes, !search.truncated);
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    public record Candidate(String collateralId, long lendingCents, int lienRank) {
+    }
+
+    /**
+     * Selected candidates, largest lending value first. {@code exhaustive} is false when the search budget ran
+     * out before every alternative was ruled out.
+     */
+    public record Plan(List<Candidate> selected, long lendingCents, int nodes, boolean exhaustive) {
+    }
+
+    private static final class Search {
+
+        private final Candidate[] sorted;
+        private final long[] prefix;
+        private final long required;
+        private final int count;
+        private final int budget;
+        private final int[] chosen;
+        private int[] best;
+        private int bestRank;
+        private long bestSurplus;
+        private int nodes;
+        private boolean truncated;
+
+        Search(Candidate[] sorted, long[] prefix, long required, int count, int budget) {
+            this.sorted = sorted;
+            this.prefix = prefix;
+            this.required = required;
+            this.count = count;
+            this.budget = budget;
+            this.chosen = new int[count];
+            this.best = new int[count];
+            for (int i = 0; i < count; i++) {
+                best[i] = i;
+                bestRank += sorted[i].lienRank();
+            }
+            this.bestSurplus = prefix[count] - required;
+        }
+
+        void run() {
+            search(0, 0, 0L, 0);
+        }
+
+        private void search(int from, int depth, long sum, int rankSum) {
+            if (isSettled()) {
+                return;
+            }
+            if (nodes++ >= budget) {
+                truncated = true;
+                return;
+            }
+            int slots = count - depth;
+            if (slots == 1) {
+                pickLast(from, sum, rankSum);
+                return;
+            }
+            long missing = required - sum;
+            for (int i = from; i <= sorted.length - slots; i++) {
+                // The largest set still reachable from here starts at i; later starts are only smaller
+                if (prefix[i + slots] - prefix[i] < missing) {
+                    return;
+                }
+                // Every further pledge ranks at least 1
+                if (rankSum + sorted[i].lienRank() + slots - 1 > bestRank) {
+                    continue;
+                }
+                chosen[depth] = i;
+                search(i + 1, depth + 1, sum + sorted[i].lendingCents(), rankSum + sorted[i].lienRank());
+                if (truncated || isSettled()) {
+                    return;
+                }
+            }
+        }
+
+        // One slot left: among candidates that cover the rest, take the most senior, then the smallest
+        private void pickLast(int from, long sum, int rankSum) {
+            long missing = required - sum;
+            int last = lastCovering(from, missing);
+            int pick = -1;
+            for (int i = last; i >= from; i--) {
+                nodes++;
+                if (pick < 0 || sorted[i].lienRank() < sorted[pick].lienRank()) {
+                    pick = i;
+                    if (sorted[i].lienRank() == 1) {
+                        break;
+                    }
+                }
+            }
+            if (pick < 0) {
+                return;
+            }
+            int rank = rankSum + sorted[pick].lienRank();
+            long surplus = sum + sorted[pick].lendingCents() - required;
+            if (rank < bestRank || (rank == bestRank && surplus < bestSurplus)) {
+                chosen[count - 1] = pick;
+                best = Arrays.copyOf(chosen, count);
+                bestRank = rank;
+                bestSurplus = surplus;
+            }
+        }
+
+        // Index of the smallest candidate at or after from whose value is at least missing, or from - 1
+        private int lastCovering(int from, long missing) {
+            int low = from;
+            int high = sorted.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sorted[mid].lendingCents() >= missing) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low - 1;
+        }
+
+        // Nothing beats every pledge ranking first with no surplus
+        private boolean isSettled() {
+            return bestRank == count && bestSurplus == 0;
+        }
+    }
+}
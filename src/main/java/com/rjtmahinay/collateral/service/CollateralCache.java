@@ -0,0 +1,84 @@
+package com.rjtmahinay.collateral.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rjtmahinay.collateral.config.CollateralProperties;
+import com.rjtmahinay.collateral.model.Collateral;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * Read-through cache of collaterals keyed by collateralId. Entries are handed out as copies so callers can
+ * mutate them freely, and are evicted whenever a collateral row is written; the committed write is also passed on
+ * to the {@link AvailableCollateralIndex}.
+ */
+@Component
+@Slf4j
+public class CollateralCache {
+
+    private final AsyncCache<String, Collateral> cache;
+    private final AvailableCollateralIndex availableCollateralIndex;
+
+    public CollateralCache(CollateralProperties properties, MeterRegistry meterRegistry,
+            AvailableCollateralIndex availableCollateralIndex) {
+        this.availableCollateralIndex = availableCollateralIndex;
+        CollateralProperties.Cache config = properties.getCache();
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getExpireAfterWrite())
+                .recordStats()
+                .<String, Collateral>buildAsync(), "collateral");
+    }
+
+    /**
+     * Returns the cached collateral, loading it with the given loader on a miss. Concurrent misses for the
+     * same collateralId share a single load; an empty result is not cached.
+     */
+    public Mono<Collateral> get(String collateralId, Function<String, Mono<Collateral>> loader) {
+        return Mono.fromFuture(cache.get(collateralId, (key, executor) -> loader.apply(key).toFuture()), true)
+                .map(collateral -> collateral.toBuilder().build());
+    }
+
+    /**
+     * Evicts the collateral once the surrounding transaction completes, or immediately when there is none, so
+     * a concurrent read cannot re-cache the value the transaction is replacing. The available-collateral index
+     * re-reads the row only after a commit, when the new value is visible to other connections.
+     */
+    public Mono<Void> evict(String collateralId) {
+        return TransactionSynchronizationManager.forCurrentTransaction()
+                .filter(TransactionSynchronizationManager::isSynchronizationActive)
+                .doOnNext(manager -> manager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public Mono<Void> afterCompletion(int status) {
+                        return Mono.fromRunnable(() -> {
+                            invalidate(collateralId);
+                            if (status == STATUS_COMMITTED) {
+                                availableCollateralIndex.refresh(collateralId);
+                            }
+                        });
+                    }
+                }))
+                .hasElement()
+                .onErrorResume(NoTransactionException.class, error -> Mono.just(false))
+                .doOnNext(inTransaction -> {
+                    invalidate(collateralId);
+                    if (!inTransaction) {
+                        availableCollateralIndex.refresh(collateralId);
+                    }
+                })
+                .then();
+    }
+
+    public void invalidate(String collateralId) {
+        log.debug("Evicting collateral from cache: {}", collateralId);
+        cache.synchronous().invalidate(collateralId);
+    }
+}
@@ -1,5 +1,8 @@
 package com.rjtmahinay.collateral.service;
 
+import com.rjtmahinay.collateral.config.CollateralProperties;
+import com.rjtmahinay.collateral.dto.BulkDto.BulkItemResult;
+import com.rjtmahinay.collateral.dto.MarketTrend;
 import com.rjtmahinay.collateral.model.AutoValuation;
 import com.rjtmahinay.collateral.model.Collateral;
 import com.rjtmahinay.collateral.model.CollateralStatus;
@@ -9,14 +12,24 @@ import com.rjtmahinay.collateral.repository.CollateralRepository;
 import com.rjtmahinay.collateral.repository.TitleRegistryRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.retry.RetryBackoffSpec;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
+import static com.rjtmahinay.collateral.service.ChangeEventService.COLLATERAL;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -25,20 +38,43 @@ public class CollateralService {
     private final CollateralRepository collateralRepository;
     private final TitleRegistryRepository titleRegistryRepository;
     private final AutoValuationRepository autoValuationRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final RetryBackoffSpec versionConflictRetry;
+    private final CollateralProperties properties;
+    private final CollateralCache collateralCache;
+    private final KeysetPaginator keysetPaginator;
+    private final MarketStatsService marketStatsService;
+    private final ChangeEventService changeEventService;
+    private final AvailableCollateralIndex availableCollateralIndex;
 
     public Mono<Collateral> createCollateral(Collateral collateral) {
         log.info("Creating new collateral for customer: {}", collateral.getCustomerId());
 
         collateral.setCollateralId(generateCollateralId());
+        collateral.setVersion(null);
         collateral.setCreatedAt(LocalDateTime.now());
         collateral.setUpdatedAt(LocalDateTime.now());
         collateral.setAvailableValue(collateral.getMarketValue());
         collateral.setEncumberedValue(BigDecimal.ZERO);
 
         return collateralRepository.save(collateral)
+                .flatMap(saved -> changeEventService.record(COLLATERAL, saved.getCollateralId(), "CREATED", saved)
+                        .thenReturn(saved))
+                .as(transactionalOperator::transactional)
+                .doOnSuccess(availableCollateralIndex::put)
                 .doOnSuccess(saved -> log.info("Collateral created with ID: {}", saved.getCollateralId()));
     }
 
+    public Flux<BulkItemResult> createCollaterals(Flux<Collateral> collaterals) {
+        log.info("Bulk creating collaterals");
+
+        CollateralProperties.Bulk bulk = properties.getBulk();
+        return collaterals.index()
+                .buffer(bulk.getBatchSize())
+                .flatMapSequential(this::insertCollateralBatch, bulk.getConcurrency(), 1)
+                .doOnComplete(() -> log.info("Bulk collateral creation completed"));
+    }
+
     public Mono<Collateral> updateCollateral(String collateralId, Collateral collateral) {
         log.info("Updating collateral: {}", collateralId);
 
@@ -64,62 +100,159 @@ public class CollateralService {
 
                     return collateralRepository.save(existing);
                 })
+                .flatMap(saved -> changeEventService.record(COLLATERAL, collateralId, "UPDATED", saved)
+                        .then(collateralCache.evict(collateralId))
+                        .thenReturn(saved))
+                .as(transactionalOperator::transactional)
+                .retryWhen(versionConflictRetry)
                 .doOnSuccess(updated -> log.info("Collateral updated: {}", updated.getCollateralId()));
     }
 
     public Mono<Collateral> getCollateralById(String collateralId) {
-        log.info("Retrieving collateral: {}", collateralId);
-        return collateralRepository.findByCollateralId(collateralId)
+        log.debug("Retrieving collateral: {}", collateralId);
+        return collateralCache.get(collateralId, collateralRepository::findByCollateralId)
                 .switchIfEmpty(Mono.error(new RuntimeException("Collateral not found: " + collateralId)));
     }
 
     public Flux<Collateral> getCollateralsByCustomerId(String customerId) {
-        log.info("Retrieving collaterals for customer: {}", customerId);
+        log.debug("Retrieving collaterals for customer: {}", customerId);
         return collateralRepository.findByCustomerId(customerId);
     }
 
     public Flux<Collateral> getCollateralsByAccountId(String accountId) {
-        log.info("Retrieving collaterals for account: {}", accountId);
+        log.debug("Retrieving collaterals for account: {}", accountId);
         return collateralRepository.findByAccountId(accountId);
     }
 
     public Flux<Collateral> getCollateralsByStatus(CollateralStatus status) {
-        log.info("Retrieving collaterals by status: {}", status);
+        log.debug("Retrieving collaterals by status: {}", status);
         return collateralRepository.findByStatus(status);
     }
 
     public Flux<Collateral> getAvailableCollaterals(String customerId, BigDecimal minValue) {
-        log.info("Retrieving available collaterals for customer: {} with min value: {}", customerId, minValue);
+        log.debug("Retrieving available collaterals for customer: {} with min value: {}", customerId, minValue);
+        if (availableCollateralIndex.isReady()) {
+            return availableCollateralIndex.find(customerId, minValue);
+        }
+        return collateralRepository.findAvailableCollateralsByCustomerIdAndMinValue(customerId, minValue);
+    }
+
+    /**
+     * Same query as {@link #getAvailableCollaterals}, always answered by the database so the rows carry their
+     * committed balances and versions rather than the index's trailing copy.
+     */
+    public Flux<Collateral> getAvailableCollateralsFromDatabase(String customerId, BigDecimal minValue) {
+        log.debug("Retrieving available collaterals from the database for customer: {} with min value: {}",
+                customerId, minValue);
         return collateralRepository.findAvailableCollateralsByCustomerIdAndMinValue(customerId, minValue);
     }
 
     public Flux<Collateral> getEncumberedCollaterals() {
-        log.info("Retrieving all encumbered collaterals");
-        return collateralRepository.findEncumberedCollaterals();
+        log.debug("Retrieving all encumbered collaterals");
+        return keysetPaginator.stream(0L, collateralRepository::findEncumberedCollateralsAfter, Collateral::getId);
+    }
+
+    public Flux<Collateral> getEncumberedCollaterals(Long afterId, Integer limit) {
+        log.debug("Retrieving encumbered collaterals after id: {}", afterId);
+        return collateralRepository.findEncumberedCollateralsAfter(keysetPaginator.afterId(afterId),
+                keysetPaginator.limit(limit));
+    }
+
+    public Flux<Collateral> streamEncumberedCollaterals(Long afterId) {
+        log.info("Streaming encumbered collaterals after id: {}", afterId);
+        return keysetPaginator.stream(afterId, collateralRepository::findEncumberedCollateralsAfter, Collateral::getId);
     }
 
     public Mono<Collateral> updateCollateralValue(String collateralId, BigDecimal marketValue) {
         log.info("Updating market value for collateral: {} to {}", collateralId, marketValue);
 
-        return collateralRepository.updateMarketValueByCollateralId(collateralId, marketValue)
-                .then(collateralRepository.findByCollateralId(collateralId))
+        return collateralRepository.updateMarketValueAndGet(collateralId, marketValue)
+                .switchIfEmpty(Mono.error(new RuntimeException("Collateral not found: " + collateralId)))
+                .flatMap(updated -> changeEventService.record(COLLATERAL, collateralId, "VALUE_UPDATED", updated)
+                        .then(collateralCache.evict(collateralId))
+                        .thenReturn(updated))
+                .as(transactionalOperator::transactional)
                 .doOnSuccess(updated -> log.info("Market value updated for collateral: {}", collateralId));
     }
 
     public Mono<Collateral> updateEncumberedValue(String collateralId, BigDecimal encumberedValue) {
         log.info("Updating encumbered value for collateral: {} to {}", collateralId, encumberedValue);
 
-        return collateralRepository.updateEncumberedValueByCollateralId(collateralId, encumberedValue)
-                .then(collateralRepository.findByCollateralId(collateralId))
+        return collateralRepository.updateEncumberedValueAndGet(collateralId, encumberedValue)
+                .switchIfEmpty(Mono.error(new RuntimeException("Collateral not found: " + collateralId)))
+                .flatMap(updated -> changeEventService.record(COLLATERAL, collateralId, "BALANCE_UPDATED", updated)
+                        .then(collateralCache.evict(collateralId))
+                        .thenReturn(updated))
+                .as(transactionalOperator::transactional)
                 .doOnSuccess(updated -> log.info("Encumbered value updated for collateral: {}", collateralId));
     }
 
+    /**
+     * Applies a change in active encumbrances to the collateral balance. Releases are applied atomically;
+     * increases are checked against the available value and guarded by the collateral version, failing with
+     * {@link OptimisticLockingFailureException} when another posting got there first.
+     */
+    public Mono<Void> adjustEncumberedValue(String collateralId, BigDecimal delta) {
+        if (delta.signum() == 0) {
+            return Mono.empty();
+        }
+        log.debug("Adjusting encumbered value for collateral: {} by {}", collateralId, delta);
+
+        if (delta.signum() < 0) {
+            return collateralRepository.adjustEncumberedValueByCollateralId(collateralId, delta)
+                    .flatMap(rows -> rows == 0
+                            ? Mono.error(new RuntimeException("Collateral not found: " + collateralId))
+                            : recordBalanceAdjusted(collateralId, delta).then(collateralCache.evict(collateralId)));
+        }
+
+        return collateralRepository.findByCollateralId(collateralId)
+                .switchIfEmpty(Mono.error(new RuntimeException("Collateral not found: " + collateralId)))
+                .flatMap(collateral -> {
+                    BigDecimal availableValue = collateral.getAvailableValue() != null
+                            ? collateral.getAvailableValue()
+                            : BigDecimal.ZERO;
+                    if (availableValue.compareTo(delta) < 0) {
+                        return Mono.error(new RuntimeException("Insufficient available value on collateral: "
+                                + collateralId + " - available: " + availableValue + ", requested: " + delta));
+                    }
+
+                    return collateralRepository
+                            .adjustEncumberedValueByCollateralIdAndVersion(collateralId, delta, collateral.getVersion())
+                            .flatMap(rows -> rows == 0
+                                    ? Mono.error(new OptimisticLockingFailureException(
+                                            "Collateral was modified concurrently: " + collateralId))
+                                    : recordBalanceAdjusted(collateralId, delta)
+                                            .then(collateralCache.evict(collateralId)));
+                });
+    }
+
+    /**
+     * Applies an increase that was planned against {@code version} of the collateral, without reading it again.
+     * Fails with {@link OptimisticLockingFailureException} when the collateral has been written since, so the
+     * caller can plan again against its current balance.
+     */
+    public Mono<Void> adjustEncumberedValue(String collateralId, BigDecimal delta, Long version) {
+        if (delta.signum() == 0) {
+            return Mono.empty();
+        }
+        log.debug("Adjusting encumbered value for collateral: {} by {} at version {}", collateralId, delta, version);
+
+        return collateralRepository.adjustEncumberedValueByCollateralIdAndVersion(collateralId, delta, version)
+                .flatMap(rows -> rows == 0
+                        ? Mono.error(new OptimisticLockingFailureException(
+                                "Collateral was modified since it was planned: " + collateralId))
+                        : recordBalanceAdjusted(collateralId, delta).then(collateralCache.evict(collateralId)));
+    }
+
     public Mono<Void> deleteCollateral(String collateralId) {
         log.info("Deleting collateral: {}", collateralId);
 
         return collateralRepository.findByCollateralId(collateralId)
                 .switchIfEmpty(Mono.error(new RuntimeException("Collateral not found: " + collateralId)))
                 .flatMap(collateral -> collateralRepository.deleteByCollateralId(collateralId))
+                .then(changeEventService.record(COLLATERAL, collateralId, "DELETED", null))
+                .then(collateralCache.evict(collateralId))
+                .as(transactionalOperator::transactional)
                 .doOnSuccess(v -> log.info("Collateral deleted: {}", collateralId));
     }
 
@@ -150,47 +283,31 @@ public class CollateralService {
     }
 
     public Mono<TitleRegistry> getOwnershipDetails(String collateralId, String titleNumber) {
-        log.info("Retrieving ownership details for collateral: {}", collateralId);
+        log.debug("Retrieving ownership details for collateral: {}", collateralId);
 
         return titleRegistryRepository.findByTitleNumber(titleNumber)
                 .switchIfEmpty(titleRegistryRepository.findLatestByCollateralId(collateralId))
-                .doOnSuccess(details -> log.info("Ownership details retrieved for collateral: {}", collateralId));
+                .doOnSuccess(details -> log.debug("Ownership details retrieved for collateral: {}", collateralId));
     }
 
     public Flux<TitleRegistry> searchExistingTitles(String collateralId) {
-        log.info("Searching existing titles for collateral: {}", collateralId);
+        log.debug("Searching existing titles for collateral: {}", collateralId);
 
         return titleRegistryRepository.findByCollateralId(collateralId)
-                .doOnComplete(() -> log.info("Title search completed for collateral: {}", collateralId));
+                .doOnComplete(() -> log.debug("Title search completed for collateral: {}", collateralId));
     }
 
     public Mono<Collateral> requestAutoValuation(String collateralId) {
         log.info("Requesting auto valuation for collateral: {}", collateralId);
 
-        return getCollateralById(collateralId)
+        // Read-modify-write paths read the row itself rather than a possibly stale cached copy
+        return collateralRepository.findByCollateralId(collateralId)
+                .switchIfEmpty(Mono.error(new RuntimeException("Collateral not found: " + collateralId)))
                 .flatMap(collateral -> {
                     // Create a new auto valuation record
-                    AutoValuation autoValuation = AutoValuation.builder()
-                            .valuationId(UUID.randomUUID().toString())
-                            .collateralId(collateralId)
-                            .type(collateral.getType().name())
-                            .location(collateral.getLocation())
-                            .description(collateral.getDescription())
-                            .status(AutoValuation.ValuationStatus.VALUATION_COMPLETED)
-                            .estimatedValue(collateral.getMarketValue())
-                            .lowRange(collateral.getMarketValue().multiply(BigDecimal.valueOf(0.8)))
-                            .highRange(collateral.getMarketValue().multiply(BigDecimal.valueOf(1.2)))
-                            .currency(collateral.getCurrency())
-                            .methodology("Database-based valuation")
-                            .confidenceScore(0.85)
-                            .valuationDate(LocalDateTime.now())
-                            .requestDate(LocalDateTime.now())
-                            .createdAt(LocalDateTime.now())
-                            .updatedAt(LocalDateTime.now())
-                            .message("Auto valuation completed successfully")
-                            .build();
+                    AutoValuation autoValuation = newAutoValuation(collateral, LocalDateTime.now());
 
-                    return autoValuationRepository.save(autoValuation)
+                    return marketStatsService.saveValuation(autoValuation)
                             .flatMap(savedValuation -> {
                                 // Update collateral with new valuation
                                 collateral.setMarketValue(savedValuation.getEstimatedValue());
@@ -205,31 +322,38 @@ public class CollateralService {
                                 return collateralRepository.save(collateral);
                             });
                 })
+                .flatMap(saved -> changeEventService.record(COLLATERAL, collateralId, "REVALUED", saved)
+                        .then(collateralCache.evict(collateralId))
+                        .thenReturn(saved))
+                .as(transactionalOperator::transactional)
+                .retryWhen(versionConflictRetry)
                 .doOnSuccess(updated -> log.info("Auto valuation completed for collateral: {}", collateralId));
     }
 
-    public Flux<AutoValuation> getMarketTrends(String collateralId) {
-        log.info("Retrieving market trends for collateral: {}", collateralId);
+    public Flux<MarketTrend> getMarketTrends(String collateralId) {
+        log.debug("Retrieving market trends for collateral: {}", collateralId);
 
         return getCollateralById(collateralId)
-                .flatMapMany(collateral -> autoValuationRepository.findByTypeAndLocationOrderByValuationDateDesc(
-                        collateral.getType().name(), collateral.getLocation()))
-                .doOnComplete(() -> log.info("Market trends retrieved for collateral: {}", collateralId));
+                .flatMapMany(collateral -> marketStatsService.getTrends(collateral.getType().name(),
+                        collateral.getLocation()))
+                .doOnComplete(() -> log.debug("Market trends retrieved for collateral: {}", collateralId));
     }
 
     public Flux<AutoValuation> getComparableProperties(String collateralId) {
-        log.info("Retrieving comparable properties for collateral: {}", collateralId);
+        log.debug("Retrieving comparable properties for collateral: {}", collateralId);
 
         return getCollateralById(collateralId)
                 .flatMapMany(collateral -> autoValuationRepository.findByTypeAndLocationOrderByValuationDateDesc(
                         collateral.getType().name(), collateral.getLocation()))
-                .doOnComplete(() -> log.info("Comparable properties retrieved for collateral: {}", collateralId));
+                .doOnComplete(() -> log.debug("Comparable properties retrieved for collateral: {}", collateralId));
     }
 
     public Mono<Collateral> requestRevaluation(String collateralId, String reason) {
         log.info("Requesting revaluation for collateral: {} with reason: {}", collateralId, reason);
 
-        return getCollateralById(collateralId)
+        // Read-modify-write paths read the row itself rather than a possibly stale cached copy
+        return collateralRepository.findByCollateralId(collateralId)
+                .switchIfEmpty(Mono.error(new RuntimeException("Collateral not found: " + collateralId)))
                 .flatMap(collateral -> {
                     // Create a new revaluation record
                     AutoValuation revaluation = AutoValuation.builder()
@@ -255,7 +379,7 @@ public class CollateralService {
                             .message("Revaluation completed: " + reason)
                             .build();
 
-                    return autoValuationRepository.save(revaluation)
+                    return marketStatsService.saveValuation(revaluation)
                             .flatMap(savedRevaluation -> {
                                 // Update collateral with new valuation
                                 collateral.setMarketValue(savedRevaluation.getEstimatedValue());
@@ -270,6 +394,11 @@ public class CollateralService {
                                 return collateralRepository.save(collateral);
                             });
                 })
+                .flatMap(saved -> changeEventService.record(COLLATERAL, collateralId, "REVALUED", saved)
+                        .then(collateralCache.evict(collateralId))
+                        .thenReturn(saved))
+                .as(transactionalOperator::transactional)
+                .retryWhen(versionConflictRetry)
                 .doOnSuccess(updated -> log.info("Revaluation completed for collateral: {}", collateralId));
     }
 
@@ -292,7 +421,13 @@ public class CollateralService {
                                         savedCollateral.setStatus(CollateralStatus.UNDER_REVIEW);
                                     }
                                     savedCollateral.setUpdatedAt(LocalDateTime.now());
-                                    return collateralRepository.save(savedCollateral);
+                                    return collateralRepository.save(savedCollateral)
+                                            .flatMap(saved -> changeEventService
+                                                    .record(COLLATERAL, saved.getCollateralId(), "STATUS_UPDATED",
+                                                            saved)
+                                                    .then(collateralCache.evict(saved.getCollateralId()))
+                                                    .thenReturn(saved))
+                                            .as(transactionalOperator::transactional);
                                 })
                                 .onErrorReturn(savedCollateral); // Continue even if title verification fails
                     }
@@ -306,6 +441,92 @@ public class CollateralService {
                         finalCollateral.getCollateralId()));
     }
 
+    // Valuation at the collateral's current market value, shared with the portfolio revaluation job
+    static AutoValuation newAutoValuation(Collateral collateral, LocalDateTime now) {
+        return AutoValuation.builder()
+                .valuationId(UUID.randomUUID().toString())
+                .collateralId(collateral.getCollateralId())
+                .type(collateral.getType().name())
+                .location(collateral.getLocation())
+                .description(collateral.getDescription())
+                .status(AutoValuation.ValuationStatus.VALUATION_COMPLETED)
+                .estimatedValue(collateral.getMarketValue())
+                .lowRange(collateral.getMarketValue().multiply(BigDecimal.valueOf(0.8)))
+                .highRange(collateral.getMarketValue().multiply(BigDecimal.valueOf(1.2)))
+                .currency(collateral.getCurrency())
+                .methodology("Database-based valuation")
+                .confidenceScore(0.85)
+                .valuationDate(now)
+                .requestDate(now)
+                .createdAt(now)
+                .updatedAt(now)
+                .message("Auto valuation completed successfully")
+                .build();
+    }
+
+    private Flux<BulkItemResult> insertCollateralBatch(List<Tuple2<Long, Collateral>> batch) {
+        List<BulkItemResult> rejected = new ArrayList<>();
+        List<Tuple2<Long, Collateral>> accepted = new ArrayList<>(batch.size());
+        for (Tuple2<Long, Collateral> item : batch) {
+            String violation = validateForInsert(item.getT2());
+            if (violation != null) {
+                rejected.add(BulkItemResult.error(item.getT1(), violation));
+            } else {
+                accepted.add(item);
+            }
+        }
+
+        List<Collateral> rows = accepted.stream().map(item -> prepareForInsert(item.getT2())).toList();
+        return insertWithEvents(rows)
+                .thenMany(Flux.fromIterable(accepted)
+                        .map(item -> BulkItemResult.success(item.getT1(), item.getT2().getCollateralId())))
+                // Fall back to row-by-row inserts so one bad row does not fail the whole batch
+                .onErrorResume(error -> Flux.fromIterable(accepted)
+                        .concatMap(item -> insertWithEvents(List.of(item.getT2()))
+                                .thenReturn(BulkItemResult.success(item.getT1(), item.getT2().getCollateralId()))
+                                .onErrorResume(rowError -> Mono.just(
+                                        BulkItemResult.error(item.getT1(), rowError.getMessage())))))
+                .mergeWith(Flux.fromIterable(rejected))
+                .sort(Comparator.comparing(BulkItemResult::getIndex));
+    }
+
+    private Mono<Void> insertWithEvents(List<Collateral> rows) {
+        return collateralRepository.insertAll(rows)
+                .then(changeEventService.recordAll(COLLATERAL, "CREATED", rows, Collateral::getCollateralId))
+                .as(transactionalOperator::transactional)
+                .doOnSuccess(v -> rows.forEach(availableCollateralIndex::put));
+    }
+
+    private Mono<Void> recordBalanceAdjusted(String collateralId, BigDecimal delta) {
+        return changeEventService.record(COLLATERAL, collateralId, "BALANCE_ADJUSTED", Map.of("delta", delta));
+    }
+
+    private String validateForInsert(Collateral collateral) {
+        if (collateral.getCustomerId() == null || collateral.getCustomerId().isBlank()) {
+            return "customerId is required";
+        }
+        if (collateral.getType() == null) {
+            return "type is required";
+        }
+        if (collateral.getStatus() == null) {
+            return "status is required";
+        }
+        return null;
+    }
+
+    private Collateral prepareForInsert(Collateral collateral) {
+        LocalDateTime now = LocalDateTime.now();
+        collateral.setId(null);
+        collateral.setVersion(null);
+        collateral.setCollateralId(generateCollateralId());
+        collateral.setCurrency(collateral.getCurrency() != null ? collateral.getCurrency() : "USD");
+        collateral.setCreatedAt(now);
+        collateral.setUpdatedAt(now);
+        collateral.setAvailableValue(collateral.getMarketValue());
+        collateral.setEncumberedValue(BigDecimal.ZERO);
+        return collateral;
+    }
+
     private String generateCollateralId() {
         return "COL-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
     }
@@ -0,0 +1,106 @@
+package com.rjtmahinay.collateral.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads RFC 4180 CSV one record at a time, so a file of any size is parsed in constant memory. Quoted fields may
+ * contain separators, doubled quotes and line breaks; blank lines are skipped.
+ */
+class CsvRecordReader implements Iterator<List<String>> {
+
+    private final Reader reader;
+    private final StringBuilder field = new StringBuilder();
+    private List<String> next;
+    private int lookahead = -2;
+
+    CsvRecordReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = readRecord();
+        }
+        return next != null;
+    }
+
+    @Override
+    public List<String> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<String> record = next;
+        next = null;
+        return record;
+    }
+
+    private List<String> readRecord() {
+        int c = read();
+        while (c == '\n' || c == '\r') {
+            c = read();
+        }
+        if (c == -1) {
+            return null;
+        }
+
+        List<String> record = new ArrayList<>();
+        boolean quoted = false;
+        field.setLength(0);
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IllegalArgumentException("Unterminated quoted field");
+                }
+                if (c == '"') {
+                    int following = read();
+                    if (following == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = following;
+                        continue;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                record.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == '\r' || c == -1) {
+                if (c == '\r') {
+                    int following = read();
+                    if (following != '\n') {
+                        lookahead = following;
+                    }
+                }
+                record.add(field.toString());
+                return record;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    private int read() {
+        if (lookahead != -2) {
+            int c = lookahead;
+            lookahead = -2;
+            return c;
+        }
+        try {
+            return reader.read();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.rjtmahinay.collateral.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rjtmahinay.collateral.config.CollateralProperties;
+import com.rjtmahinay.collateral.dto.CustomerExposure;
+import com.rjtmahinay.collateral.dto.CustomerExposure.TypeExposure;
+import com.rjtmahinay.collateral.repository.CollateralRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Collateral capacity of a customer, aggregated by the database in one query over collateral and its active
+ * encumbrances. The cached variant serves hot customers from a short-lived cache instead of re-aggregating on
+ * every call.
+ */
+@Service
+@Slf4j
+public class CustomerExposureService {
+
+    private final CollateralRepository collateralRepository;
+    private final AsyncCache<String, CustomerExposure> cache;
+
+    public CustomerExposureService(CollateralRepository collateralRepository, CollateralProperties properties,
+            MeterRegistry meterRegistry) {
+        this.collateralRepository = collateralRepository;
+
+        CollateralProperties.Exposure config = properties.getExposure();
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getExpireAfterWrite())
+                .recordStats()
+                .<String, CustomerExposure>buildAsync(), "customer-exposure");
+    }
+
+    public Mono<CustomerExposure> getExposure(String customerId) {
+        log.debug("Aggregating exposure for customer: {}", customerId);
+        return collateralRepository.findExposureByCustomerId(customerId)
+                .collectList()
+                .map(byType -> summarize(customerId, byType));
+    }
+
+    /**
+     * Same as {@link #getExposure} but may be up to {@code collateral.exposure.expire-after-write} old.
+     * Concurrent misses for the same customer share a single query.
+     */
+    public Mono<CustomerExposure> getCachedExposure(String customerId) {
+        return Mono.fromFuture(cache.get(customerId, (key, executor) -> getExposure(key).toFuture()), true);
+    }
+
+    private CustomerExposure summarize(String customerId, List<TypeExposure> byType) {
+        long collateralCount = 0;
+        long encumbranceCount = 0;
+        BigDecimal marketValue = BigDecimal.ZERO;
+        BigDecimal encumberedValue = BigDecimal.ZERO;
+        BigDecimal availableValue = BigDecimal.ZERO;
+        BigDecimal encumbranceAmount = BigDecimal.ZERO;
+        for (TypeExposure type : byType) {
+            collateralCount += type.getCollateralCount();
+            encumbranceCount += type.getActiveEncumbranceCount();
+            marketValue = marketValue.add(type.getMarketValue());
+            encumberedValue = encumberedValue.add(type.getEncumberedValue());
+            availableValue = availableValue.add(type.getAvailableValue());
+            encumbranceAmount = encumbranceAmount.add(type.getActiveEncumbranceAmount());
+        }
+
+        return CustomerExposure.builder()
+                .customerId(customerId)
+                .collateralCount(collateralCount)
+                .totalMarketValue(marketValue)
+                .totalEncumberedValue(encumberedValue)
+                .totalAvailableValue(availableValue)
+                .activeEncumbranceCount(encumbranceCount)
+                .activeEncumbranceAmount(encumbranceAmount)
+                .byType(byType)
+                .asOf(LocalDateTime.now())
+                .build();
+    }
+}
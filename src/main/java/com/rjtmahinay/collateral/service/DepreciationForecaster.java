@@ -0,0 +1,48 @@
+package com.rjtmahinay.collateral.service;
+
+import com.rjtmahinay.collateral.dto.AutoLoanDto.MonthlyDepreciation;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Constant-rate depreciation forecast. Month m is computed directly as {@code value * (1 - rate)^m} in
+ * {@link MathContext#DECIMAL64} and rounded to cents, so no month depends on the rounding of the one before it
+ * and every amount has a bounded size regardless of the horizon.
+ */
+@Component
+public class DepreciationForecaster {
+
+    private static final MathContext CONTEXT = MathContext.DECIMAL64;
+
+    /**
+     * Projects {@code currentValue} over {@code months}, returning every {@code interval}-th month plus the
+     * final month, or only the final month when {@code summaryOnly} is set.
+     */
+    public List<MonthlyDepreciation> forecast(BigDecimal currentValue, int months, double monthlyRate,
+            int interval, boolean summaryOnly) {
+        BigDecimal retention = BigDecimal.ONE.subtract(BigDecimal.valueOf(monthlyRate), CONTEXT);
+        int step = summaryOnly ? months : Math.max(1, interval);
+
+        List<MonthlyDepreciation> points = new ArrayList<>(months / step + 1);
+        for (int month = step; month < months; month += step) {
+            points.add(point(currentValue, retention, month));
+        }
+        points.add(point(currentValue, retention, months));
+        return points;
+    }
+
+    private MonthlyDepreciation point(BigDecimal currentValue, BigDecimal retention, int month) {
+        BigDecimal projectedValue = currentValue.multiply(retention.pow(month, CONTEXT), CONTEXT)
+                .setScale(2, RoundingMode.HALF_UP);
+        return MonthlyDepreciation.builder()
+                .month(month)
+                .projectedValue(projectedValue)
+                .depreciationAmount(currentValue.subtract(projectedValue))
+                .build();
+    }
+}
@@ -0,0 +1,60 @@
+package com.rjtmahinay.collateral.service;
+
+import com.rjtmahinay.collateral.config.CollateralProperties;
+import com.rjtmahinay.collateral.dto.EncumberedValueDrift;
+import com.rjtmahinay.collateral.repository.CollateralRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Encumbered values are maintained incrementally by {@link CollateralService#adjustEncumberedValue}; this job
+ * periodically verifies the running totals against the SUM of ACTIVE encumbrances and repairs any drift. The
+ * repair recomputes the SUM inside its UPDATE and only applies while the recorded value is still the drifted one,
+ * so a posting or release that commits in between is never overwritten. Drift is read in keyset pages over the
+ * collateral id, so no single query holds the whole table.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(prefix = "collateral.reconciliation", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class EncumberedValueReconciliationService {
+
+    private final CollateralRepository collateralRepository;
+    private final CollateralProperties properties;
+    private final CollateralCache collateralCache;
+    private final KeysetPaginator keysetPaginator;
+
+    @Scheduled(initialDelayString = "${collateral.reconciliation.interval:PT15M}", fixedDelayString = "${collateral.reconciliation.interval:PT15M}")
+    public Mono<Long> reconcile() {
+        return Mono.defer(() -> {
+            log.info("Reconciling collateral encumbered values");
+
+            return findDrift()
+                    .concatMap(drift -> properties.getReconciliation().isRepair()
+                            ? collateralRepository.repairEncumberedValueAndGet(drift.getCollateralId(),
+                                    drift.getRecordedValue())
+                                    .flatMap(repaired -> collateralCache.evict(drift.getCollateralId())
+                                            .thenReturn(repaired))
+                                    .switchIfEmpty(Mono.fromRunnable(() -> log.info(
+                                            "Collateral: {} changed since its drift was read - left to the next run",
+                                            drift.getCollateralId())))
+                                    .thenReturn(drift)
+                            : Mono.just(drift))
+                    .count()
+                    .doOnSuccess(count -> log.info(
+                            "Encumbered value reconciliation completed - {} collateral(s) drifted", count));
+        });
+    }
+
+    public Flux<EncumberedValueDrift> findDrift() {
+        return keysetPaginator.stream(0L, collateralRepository::findEncumberedValueDriftAfter,
+                        EncumberedValueDrift::getId)
+                .doOnNext(drift -> log.warn("Encumbered value drift for collateral: {} - recorded: {}, actual: {}",
+                        drift.getCollateralId(), drift.getRecordedValue(), drift.getActualValue()));
+    }
+}
@@ -0,0 +1,138 @@
+package com.rjtmahinay.collateral.service;
+
+import com.rjtmahinay.collateral.config.CollateralProperties;
+import com.rjtmahinay.collateral.model.Encumbrance;
+import com.rjtmahinay.collateral.repository.EncumbranceRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.RetryBackoffSpec;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Expires ACTIVE encumbrances past their expiry date in chunks, oldest first. Each chunk reads the ids of the
+ * oldest expired rows in index order, locks those rows by id, flips them to EXPIRED and releases their amounts with
+ * one balance adjustment per affected collateral in a single transaction, so a large expiry wave never holds the
+ * table and no collateral is left with a stale balance.
+ */
+@Service
+@Slf4j
+public class EncumbranceExpiryService {
+
+    private final EncumbranceRepository encumbranceRepository;
+    private final CollateralService collateralService;
+    private final ChangeEventService changeEventService;
+    private final TransactionalOperator transactionalOperator;
+    private final RetryBackoffSpec versionConflictRetry;
+    private final CollateralProperties properties;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Counter expired;
+    private final Counter chunks;
+    // Expired encumbrances still ACTIVE, as of the start of the current run
+    private final AtomicLong backlog = new AtomicLong();
+
+    public EncumbranceExpiryService(EncumbranceRepository encumbranceRepository, CollateralService collateralService,
+            ChangeEventService changeEventService, TransactionalOperator transactionalOperator,
+            RetryBackoffSpec versionConflictRetry, CollateralProperties properties, MeterRegistry meterRegistry) {
+        this.encumbranceRepository = encumbranceRepository;
+        this.collateralService = collateralService;
+        this.changeEventService = changeEventService;
+        this.transactionalOperator = transactionalOperator;
+        this.versionConflictRetry = versionConflictRetry;
+        this.properties = properties;
+
+        this.expired = Counter.builder("collateral.expiry.expired")
+                .description("Encumbrances expired by the expiry job")
+                .register(meterRegistry);
+        this.chunks = Counter.builder("collateral.expiry.chunks")
+                .description("Expiry chunks committed")
+                .register(meterRegistry);
+        meterRegistry.gauge("collateral.expiry.backlog", backlog);
+    }
+
+    @Scheduled(initialDelayString = "${collateral.expiry.interval:PT5M}", fixedDelayString = "${collateral.expiry.interval:PT5M}")
+    public Mono<Long> scheduledExpiry() {
+        return properties.getExpiry().isEnabled() ? expire() : Mono.empty();
+    }
+
+    /**
+     * Expires everything past its expiry date as of now and returns the number of encumbrances expired.
+     */
+    public Mono<Long> expire() {
+        return Mono.defer(() -> {
+            if (!running.compareAndSet(false, true)) {
+                log.warn("Encumbrance expiry already running - skipping");
+                return Mono.just(0L);
+            }
+            LocalDateTime currentDate = LocalDateTime.now();
+            int chunkSize = properties.getExpiry().getChunkSize();
+            log.info("Processing expired encumbrances");
+
+            return encumbranceRepository.countExpiredEncumbrances(currentDate)
+                    .doOnNext(backlog::set)
+                    .thenMany(expireChunk(currentDate, chunkSize)
+                            .expand(chunk -> chunk.selected() < chunkSize
+                                    ? Mono.empty()
+                                    : expireChunk(currentDate, chunkSize)))
+                    .reduce(0L, (total, chunk) -> total + chunk.expired())
+                    .doOnSuccess(total -> log.info("Expired encumbrances processing completed - {} expired", total))
+                    .doFinally(signal -> running.set(false));
+        });
+    }
+
+    private Mono<Chunk> expireChunk(LocalDateTime currentDate, int chunkSize) {
+        return encumbranceRepository.findExpiredEncumbranceIds(currentDate, chunkSize)
+                .collectList()
+                .flatMap(selected -> selected.isEmpty()
+                        ? Mono.just(new Chunk(0, 0))
+                        : encumbranceRepository.lockActiveEncumbrancesById(selected)
+                                .collectList()
+                                .flatMap(encumbrances -> expireLocked(selected.size(), encumbrances)))
+                .as(transactionalOperator::transactional)
+                .retryWhen(versionConflictRetry)
+                .doOnSuccess(chunk -> {
+                    if (chunk.expired() > 0) {
+                        chunks.increment();
+                        expired.increment(chunk.expired());
+                        backlog.updateAndGet(remaining -> Math.max(0, remaining - chunk.expired()));
+                    }
+                });
+    }
+
+    private Mono<Chunk> expireLocked(int selected, List<Encumbrance> encumbrances) {
+        if (encumbrances.isEmpty()) {
+            return Mono.just(new Chunk(selected, 0));
+        }
+        Map<String, BigDecimal> releasedByCollateral = new LinkedHashMap<>();
+        for (Encumbrance encumbrance : encumbrances) {
+            // A null amount releases nothing; failing on it would retry the same oldest chunk forever
+            releasedByCollateral.merge(encumbrance.getCollateralId(),
+                    encumbrance.getAmount() != null ? encumbrance.getAmount() : BigDecimal.ZERO, BigDecimal::add);
+        }
+        List<Long> ids = encumbrances.stream().map(Encumbrance::getId).toList();
+
+        return encumbranceRepository.expireEncumbrancesById(ids)
+                .flatMap(rows -> Flux.fromIterable(releasedByCollateral.entrySet())
+                        .concatMap(entry -> collateralService.adjustEncumberedValue(entry.getKey(),
+                                entry.getValue().negate()))
+                        .then(changeEventService.recordAll(ChangeEventService.ENCUMBRANCE, "EXPIRED",
+                                encumbrances, Encumbrance::getEncumbranceId))
+                        .then(Mono.just(new Chunk(selected, rows))));
+    }
+
+    private record Chunk(int selected, int expired) {
+    }
+}
@@ -1,18 +1,32 @@
 package com.rjtmahinay.collateral.service;
 
+import com.rjtmahinay.collateral.config.CollateralProperties;
+import com.rjtmahinay.collateral.dto.BulkDto.BulkItemResult;
+import com.rjtmahinay.collateral.dto.LienPosition;
 import com.rjtmahinay.collateral.model.Encumbrance;
 import com.rjtmahinay.collateral.model.EncumbranceStatus;
 import com.rjtmahinay.collateral.repository.EncumbranceRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.retry.RetryBackoffSpec;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
 
+import static com.rjtmahinay.collateral.service.ChangeEventService.ENCUMBRANCE;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -20,6 +34,12 @@ public class EncumbranceService {
 
     private final EncumbranceRepository encumbranceRepository;
     private final CollateralService collateralService;
+    private final TransactionalOperator transactionalOperator;
+    private final RetryBackoffSpec versionConflictRetry;
+    private final CollateralProperties properties;
+    private final KeysetPaginator keysetPaginator;
+    private final EncumbranceExpiryService encumbranceExpiryService;
+    private final ChangeEventService changeEventService;
 
     public Mono<Encumbrance> createEncumbrance(Encumbrance encumbrance) {
         log.info("Creating new encumbrance for collateral: {}", encumbrance.getCollateralId());
@@ -28,12 +48,72 @@ public class EncumbranceService {
         encumbrance.setCreatedAt(LocalDateTime.now());
         encumbrance.setUpdatedAt(LocalDateTime.now());
 
-        return encumbranceRepository.save(encumbrance)
-                .flatMap(saved -> updateCollateralEncumberedValue(saved.getCollateralId()).thenReturn(saved))
+        return Mono.defer(() -> {
+            // A retried attempt must insert again, not update the row rolled back with the previous attempt
+            encumbrance.setId(null);
+            encumbrance.setVersion(null);
+            return encumbranceRepository.save(encumbrance);
+        })
+                .flatMap(saved -> collateralService
+                        .adjustEncumberedValue(saved.getCollateralId(), encumberedAmount(saved))
+                        .then(changeEventService.record(ENCUMBRANCE, saved.getEncumbranceId(), "CREATED", saved))
+                        .thenReturn(saved))
+                .as(transactionalOperator::transactional)
+                .retryWhen(versionConflictRetry)
                 .doOnSuccess(saved -> log.info("Encumbrance created with ID: {}", saved.getEncumbranceId()))
                 .doOnError(error -> log.error("Error creating encumbrance", error));
     }
 
+    public Flux<BulkItemResult> createEncumbrances(Flux<Encumbrance> encumbrances) {
+        log.info("Bulk creating encumbrances");
+
+        CollateralProperties.Bulk bulk = properties.getBulk();
+        // Batches run one after another so two batches never contend for the same collateral row
+        return encumbrances.index()
+                .buffer(bulk.getBatchSize())
+                .concatMap(batch -> postEncumbranceBatch(batch, bulk.getConcurrency()))
+                .doOnComplete(() -> log.info("Bulk encumbrance creation completed"));
+    }
+
+    /**
+     * Posts encumbrances on distinct collaterals in one transaction, so either all of them are created or none
+     * is. Each collateral's balance is only adjusted while it is still at the version in {@code plannedVersions},
+     * the one the amounts were planned against; otherwise the posting fails with
+     * {@link OptimisticLockingFailureException}. Conflicts are not retried here; the caller plans again.
+     */
+    public Mono<List<Encumbrance>> createEncumbrancesAtomically(List<Encumbrance> encumbrances,
+            Map<String, Long> plannedVersions) {
+        log.info("Atomically creating {} encumbrance(s)", encumbrances.size());
+
+        for (Encumbrance encumbrance : encumbrances) {
+            String violation = validateForInsert(encumbrance);
+            if (violation != null) {
+                return Mono.error(new IllegalArgumentException(violation));
+            }
+            if (!plannedVersions.containsKey(encumbrance.getCollateralId())) {
+                return Mono.error(new IllegalArgumentException(
+                        "No planned version for collateral: " + encumbrance.getCollateralId()));
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        encumbrances.forEach(encumbrance -> prepareForInsert(encumbrance, now));
+
+        return Flux.fromIterable(encumbrances)
+                .concatMap(encumbrance -> collateralService.adjustEncumberedValue(encumbrance.getCollateralId(),
+                        encumberedAmount(encumbrance), plannedVersions.get(encumbrance.getCollateralId())))
+                .then(encumbranceRepository.insertAll(encumbrances))
+                .then(changeEventService.recordAll(ENCUMBRANCE, "CREATED", encumbrances,
+                        Encumbrance::getEncumbranceId))
+                .as(transactionalOperator::transactional)
+                .thenReturn(encumbrances)
+                .doOnSuccess(created -> log.info("Atomically created {} encumbrance(s)", created.size()));
+    }
+
+    public Flux<LienPosition> getLienPositions(String customerId) {
+        log.debug("Retrieving lien positions for customer: {}", customerId);
+        return encumbranceRepository.findLienPositionsByCustomerId(customerId);
+    }
+
     public Mono<Encumbrance> updateEncumbrance(String encumbranceId, Encumbrance encumbrance) {
         log.info("Updating encumbrance: {}", encumbranceId);
 
@@ -41,6 +121,7 @@ public class EncumbranceService {
                 .switchIfEmpty(Mono.error(new RuntimeException("Encumbrance not found: " + encumbranceId)))
                 .flatMap(existing -> {
                     String collateralId = existing.getCollateralId();
+                    BigDecimal previousAmount = encumberedAmount(existing);
 
                     existing.setAmount(encumbrance.getAmount());
                     existing.setCurrency(encumbrance.getCurrency());
@@ -56,63 +137,81 @@ public class EncumbranceService {
                     existing.setNotes(encumbrance.getNotes());
 
                     return encumbranceRepository.save(existing)
-                            .flatMap(saved -> updateCollateralEncumberedValue(collateralId).thenReturn(saved));
+                            .flatMap(saved -> collateralService
+                                    .adjustEncumberedValue(collateralId,
+                                            encumberedAmount(saved).subtract(previousAmount))
+                                    .then(changeEventService.record(ENCUMBRANCE, encumbranceId, "UPDATED", saved))
+                                    .thenReturn(saved));
                 })
+                .as(transactionalOperator::transactional)
+                .retryWhen(versionConflictRetry)
                 .doOnSuccess(updated -> log.info("Encumbrance updated: {}", updated.getEncumbranceId()))
                 .doOnError(error -> log.error("Error updating encumbrance: {}", encumbranceId, error));
     }
 
     public Mono<Encumbrance> getEncumbranceById(String encumbranceId) {
-        log.info("Retrieving encumbrance: {}", encumbranceId);
+        log.debug("Retrieving encumbrance: {}", encumbranceId);
         return encumbranceRepository.findByEncumbranceId(encumbranceId)
                 .switchIfEmpty(Mono.error(new RuntimeException("Encumbrance not found: " + encumbranceId)));
     }
 
     public Flux<Encumbrance> getEncumbrancesByCollateralId(String collateralId) {
-        log.info("Retrieving encumbrances for collateral: {}", collateralId);
+        log.debug("Retrieving encumbrances for collateral: {}", collateralId);
         return encumbranceRepository.findByCollateralId(collateralId);
     }
 
     public Flux<Encumbrance> getEncumbrancesByLoanId(String loanId) {
-        log.info("Retrieving encumbrances for loan: {}", loanId);
+        log.debug("Retrieving encumbrances for loan: {}", loanId);
         return encumbranceRepository.findByLoanId(loanId);
     }
 
     public Flux<Encumbrance> getEncumbrancesByCustomerId(String customerId) {
-        log.info("Retrieving encumbrances for customer: {}", customerId);
+        log.debug("Retrieving encumbrances for customer: {}", customerId);
         return encumbranceRepository.findByCustomerId(customerId);
     }
 
     public Flux<Encumbrance> getEncumbrancesByStatus(EncumbranceStatus status) {
-        log.info("Retrieving encumbrances by status: {}", status);
+        log.debug("Retrieving encumbrances by status: {}", status);
         return encumbranceRepository.findByStatus(status);
     }
 
+    public Flux<Encumbrance> getEncumbrancesByStatus(EncumbranceStatus status, Long afterId, Integer limit) {
+        log.debug("Retrieving encumbrances by status: {} after id: {}", status, afterId);
+        return encumbranceRepository.findByStatusAfter(status, keysetPaginator.afterId(afterId),
+                keysetPaginator.limit(limit));
+    }
+
+    public Flux<Encumbrance> streamEncumbrancesByStatus(EncumbranceStatus status, Long afterId) {
+        log.info("Streaming encumbrances by status: {} after id: {}", status, afterId);
+        return keysetPaginator.stream(afterId,
+                (after, limit) -> encumbranceRepository.findByStatusAfter(status, after, limit), Encumbrance::getId);
+    }
+
     public Flux<Encumbrance> getActiveEncumbrancesByCollateral(String collateralId) {
-        log.info("Retrieving active encumbrances for collateral: {}", collateralId);
+        log.debug("Retrieving active encumbrances for collateral: {}", collateralId);
         return encumbranceRepository.findActiveEncumbrancesByCollateralId(collateralId)
                 .sort((e1, e2) -> Integer.compare(e1.getPriority() != null ? e1.getPriority() : 0,
                         e2.getPriority() != null ? e2.getPriority() : 0));
     }
 
     public Flux<Encumbrance> getExpiredEncumbrances() {
-        log.info("Retrieving expired encumbrances");
+        log.debug("Retrieving expired encumbrances");
         LocalDateTime currentDate = LocalDateTime.now();
         return encumbranceRepository.findExpiredEncumbrances(currentDate);
     }
 
     public Mono<BigDecimal> getTotalEncumberedAmount(String collateralId) {
-        log.info("Calculating total encumbered amount for collateral: {}", collateralId);
+        log.debug("Calculating total encumbered amount for collateral: {}", collateralId);
         return encumbranceRepository.getTotalEncumberedAmountByCollateralId(collateralId);
     }
 
     public Mono<Encumbrance> releaseEncumbrance(String encumbranceId, String releasedBy) {
         log.info("Releasing encumbrance: {}", encumbranceId);
 
-        return encumbranceRepository.releaseEncumbranceById(encumbranceId, releasedBy)
-                .then(encumbranceRepository.findByEncumbranceId(encumbranceId))
-                .flatMap(encumbrance -> updateCollateralEncumberedValue(encumbrance.getCollateralId())
-                        .thenReturn(encumbrance))
+        return getEncumbranceById(encumbranceId)
+                .flatMap(encumbrance -> release(encumbrance, releasedBy))
+                .as(transactionalOperator::transactional)
+                .retryWhen(versionConflictRetry)
                 .doOnSuccess(released -> log.info("Encumbrance released: {}", released.getEncumbranceId()));
     }
 
@@ -123,43 +222,178 @@ public class EncumbranceService {
         return getEncumbranceById(encumbranceId)
                 .flatMap(encumbrance -> {
                     if (releaseAmount.compareTo(encumbrance.getAmount()) >= 0) {
-                        return releaseEncumbrance(encumbranceId, releasedBy);
+                        return release(encumbrance, releasedBy);
                     }
 
-                    return encumbranceRepository.partiallyReleaseEncumbrance(encumbranceId, releaseAmount, releasedBy)
-                            .then(encumbranceRepository.findByEncumbranceId(encumbranceId))
-                            .flatMap(updated -> updateCollateralEncumberedValue(updated.getCollateralId())
+                    BigDecimal delta = encumbrance.getStatus() == EncumbranceStatus.ACTIVE
+                            ? releaseAmount.negate()
+                            : BigDecimal.ZERO;
+
+                    return encumbranceRepository
+                            .partiallyReleaseAndGet(encumbranceId, releaseAmount, releasedBy, encumbrance.getVersion())
+                            .switchIfEmpty(concurrentModification(encumbranceId))
+                            .flatMap(updated -> collateralService
+                                    .adjustEncumberedValue(encumbrance.getCollateralId(), delta)
+                                    .then(changeEventService.record(ENCUMBRANCE, encumbranceId, "PARTIALLY_RELEASED",
+                                            updated))
                                     .thenReturn(updated));
                 })
+                .as(transactionalOperator::transactional)
+                .retryWhen(versionConflictRetry)
                 .doOnSuccess(updated -> log.info("Encumbrance partially released: {}", updated.getEncumbranceId()));
     }
 
-    public Mono<Void> expireEncumbrances() {
-        log.info("Processing expired encumbrances");
-
-        LocalDateTime currentDate = LocalDateTime.now();
-        return encumbranceRepository.expireEncumbrances(currentDate)
-                .then()
-                .doOnSuccess(v -> log.info("Expired encumbrances processing completed"));
+    public Mono<Long> expireEncumbrances() {
+        return encumbranceExpiryService.expire();
     }
 
     public Mono<Void> deleteEncumbrance(String encumbranceId) {
         log.info("Deleting encumbrance: {}", encumbranceId);
 
         return getEncumbranceById(encumbranceId)
-                .flatMap(encumbrance -> {
-                    String collateralId = encumbrance.getCollateralId();
-                    return encumbranceRepository.deleteByEncumbranceId(encumbranceId)
-                            .then(updateCollateralEncumberedValue(collateralId));
-                })
+                .flatMap(encumbrance -> encumbranceRepository.delete(encumbrance)
+                        .then(collateralService.adjustEncumberedValue(encumbrance.getCollateralId(),
+                                encumberedAmount(encumbrance).negate()))
+                        .then(changeEventService.record(ENCUMBRANCE, encumbranceId, "DELETED", null)))
+                .as(transactionalOperator::transactional)
+                .retryWhen(versionConflictRetry)
                 .doOnSuccess(v -> log.info("Encumbrance deleted: {}", encumbranceId))
                 .doOnError(error -> log.error("Error deleting encumbrance: {}", encumbranceId, error));
     }
 
-    private Mono<Void> updateCollateralEncumberedValue(String collateralId) {
-        return getTotalEncumberedAmount(collateralId)
-                .flatMap(totalAmount -> collateralService.updateEncumberedValue(collateralId, totalAmount))
-                .then();
+    private Mono<Encumbrance> release(Encumbrance encumbrance, String releasedBy) {
+        String encumbranceId = encumbrance.getEncumbranceId();
+        return encumbranceRepository.releaseAndGet(encumbranceId, releasedBy, encumbrance.getVersion())
+                .switchIfEmpty(concurrentModification(encumbranceId))
+                .flatMap(released -> collateralService
+                        .adjustEncumberedValue(encumbrance.getCollateralId(), encumberedAmount(encumbrance).negate())
+                        .then(changeEventService.record(ENCUMBRANCE, encumbranceId, "RELEASED", released))
+                        .thenReturn(released));
+    }
+
+    /**
+     * Posts the whole batch in one transaction: one balance adjustment per collateral, in collateralId order so
+     * concurrent batches lock rows in the same order, then a single multi-row INSERT. When that fails the batch
+     * is posted again one collateral at a time, so only the collaterals that cannot take their postings fail.
+     */
+    private Flux<BulkItemResult> postEncumbranceBatch(List<Tuple2<Long, Encumbrance>> batch, int concurrency) {
+        List<BulkItemResult> rejected = new ArrayList<>();
+        Map<String, List<Tuple2<Long, Encumbrance>>> byCollateral = new TreeMap<>();
+        for (Tuple2<Long, Encumbrance> item : batch) {
+            String violation = validateForInsert(item.getT2());
+            if (violation != null) {
+                rejected.add(BulkItemResult.error(item.getT1(), violation));
+            } else {
+                byCollateral.computeIfAbsent(item.getT2().getCollateralId(), id -> new ArrayList<>()).add(item);
+            }
+        }
+        if (byCollateral.isEmpty()) {
+            return Flux.fromIterable(rejected);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Encumbrance> rows = new ArrayList<>(batch.size());
+        Map<String, BigDecimal> deltas = new TreeMap<>();
+        byCollateral.forEach((collateralId, group) -> {
+            BigDecimal delta = BigDecimal.ZERO;
+            for (Tuple2<Long, Encumbrance> item : group) {
+                Encumbrance encumbrance = prepareForInsert(item.getT2(), now);
+                rows.add(encumbrance);
+                delta = delta.add(encumberedAmount(encumbrance));
+            }
+            deltas.put(collateralId, delta);
+        });
+
+        return Flux.fromIterable(deltas.entrySet())
+                .concatMap(delta -> collateralService.adjustEncumberedValue(delta.getKey(), delta.getValue()))
+                .then(encumbranceRepository.insertAll(rows))
+                .then(changeEventService.recordAll(ENCUMBRANCE, "CREATED", rows, Encumbrance::getEncumbranceId))
+                .as(transactionalOperator::transactional)
+                .retryWhen(versionConflictRetry)
+                .thenMany(Flux.fromIterable(byCollateral.values())
+                        .flatMapIterable(group -> group)
+                        .map(item -> BulkItemResult.success(item.getT1(), item.getT2().getEncumbranceId())))
+                .onErrorResume(error -> {
+                    log.warn("Bulk posting of {} encumbrance(s) failed, posting per collateral: {}", rows.size(),
+                            error.getMessage());
+                    return Flux.fromIterable(byCollateral.entrySet())
+                            .flatMap(group -> postCollateralGroup(group.getKey(), group.getValue()), concurrency);
+                })
+                .mergeWith(Flux.fromIterable(rejected))
+                .sort(Comparator.comparing(BulkItemResult::getIndex));
+    }
+
+    // One balance adjustment and one INSERT for all of a collateral's encumbrances in the batch
+    private Flux<BulkItemResult> postCollateralGroup(String collateralId, List<Tuple2<Long, Encumbrance>> group) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Encumbrance> rows = new ArrayList<>(group.size());
+        BigDecimal delta = BigDecimal.ZERO;
+        for (Tuple2<Long, Encumbrance> item : group) {
+            Encumbrance encumbrance = prepareForInsert(item.getT2(), now);
+            rows.add(encumbrance);
+            delta = delta.add(encumberedAmount(encumbrance));
+        }
+
+        return collateralService.adjustEncumberedValue(collateralId, delta)
+                .then(encumbranceRepository.insertAll(rows))
+                .then(changeEventService.recordAll(ENCUMBRANCE, "CREATED", rows, Encumbrance::getEncumbranceId))
+                .as(transactionalOperator::transactional)
+                .retryWhen(versionConflictRetry)
+                .thenMany(Flux.fromIterable(group)
+                        .map(item -> BulkItemResult.success(item.getT1(), item.getT2().getEncumbranceId())))
+                // The group failed as a whole (e.g. it exceeds the available value together), so post each
+                // encumbrance on its own to find out which ones still fit
+                .onErrorResume(error -> {
+                    log.warn("Bulk posting for collateral {} failed, posting individually: {}", collateralId,
+                            error.getMessage());
+                    return Flux.fromIterable(group)
+                            .concatMap(item -> createEncumbrance(item.getT2())
+                                    .map(created -> BulkItemResult.success(item.getT1(), created.getEncumbranceId()))
+                                    .onErrorResume(itemError -> Mono.just(
+                                            BulkItemResult.error(item.getT1(), itemError.getMessage()))));
+                });
+    }
+
+    private String validateForInsert(Encumbrance encumbrance) {
+        if (encumbrance.getCollateralId() == null || encumbrance.getCollateralId().isBlank()) {
+            return "collateralId is required";
+        }
+        if (encumbrance.getCustomerId() == null || encumbrance.getCustomerId().isBlank()) {
+            return "customerId is required";
+        }
+        if (encumbrance.getAmount() == null || encumbrance.getAmount().signum() <= 0) {
+            return "amount must be positive";
+        }
+        if (encumbrance.getType() == null) {
+            return "type is required";
+        }
+        if (encumbrance.getStatus() == null) {
+            return "status is required";
+        }
+        return null;
+    }
+
+    private Encumbrance prepareForInsert(Encumbrance encumbrance, LocalDateTime now) {
+        encumbrance.setId(null);
+        encumbrance.setVersion(null);
+        encumbrance.setEncumbranceId(generateEncumbranceId());
+        encumbrance.setCurrency(encumbrance.getCurrency() != null ? encumbrance.getCurrency() : "USD");
+        encumbrance.setPriority(encumbrance.getPriority() != null ? encumbrance.getPriority() : 1);
+        encumbrance.setCreatedAt(now);
+        encumbrance.setUpdatedAt(now);
+        return encumbrance;
+    }
+
+    private Mono<Encumbrance> concurrentModification(String encumbranceId) {
+        return Mono.error(() -> new OptimisticLockingFailureException(
+                "Encumbrance was modified concurrently: " + encumbranceId));
+    }
+
+    // Only ACTIVE encumbrances count towards the collateral's encumbered value
+    private BigDecimal encumberedAmount(Encumbrance encumbrance) {
+        return encumbrance.getStatus() == EncumbranceStatus.ACTIVE && encumbrance.getAmount() != null
+                ? encumbrance.getAmount()
+                : BigDecimal.ZERO;
     }
 
     private String generateEncumbranceId() {
@@ -0,0 +1,21 @@
+package com.rjtmahinay.collateral.service;
+
+/**
+ * Tables that can be exported. Each has a surrogate {@code id} for keyset paging and {@code type} and
+ * {@code status} columns to partition by.
+ */
+public enum ExportTable {
+    COLLATERAL("collateral"),
+    ENCUMBRANCE("encumbrance"),
+    AUTO_VALUATION("auto_valuation");
+
+    private final String tableName;
+
+    ExportTable(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+}
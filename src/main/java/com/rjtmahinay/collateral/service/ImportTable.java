@@ -0,0 +1,99 @@
+package com.rjtmahinay.collateral.service;
+
+import com.rjtmahinay.collateral.model.CollateralStatus;
+import com.rjtmahinay.collateral.model.CollateralType;
+import com.rjtmahinay.collateral.model.EncumbranceStatus;
+import com.rjtmahinay.collateral.model.EncumbranceType;
+import com.rjtmahinay.collateral.model.TitleRegistry;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tables the bulk import loads, with the column types used to bind CSV values. {@code id} and {@code version}
+ * are always generated, so an exported file can be imported as is.
+ */
+public enum ImportTable {
+    COLLATERAL("collateral", "collateral_id", columns(
+            "collateral_id", String.class, "customer_id", String.class, "account_id", String.class,
+            "type", String.class, "description", String.class, "estimated_value", BigDecimal.class,
+            "market_value", BigDecimal.class, "currency", String.class, "status", String.class,
+            "location", String.class, "evaluation_date", LocalDateTime.class, "created_at", LocalDateTime.class,
+            "updated_at", LocalDateTime.class, "created_by", String.class, "updated_by", String.class,
+            "available_value", BigDecimal.class, "encumbered_value", BigDecimal.class,
+            "legal_description", String.class, "ownership_documents", String.class,
+            "last_inspection_date", LocalDateTime.class, "risk_rating", String.class),
+            List.of("collateral_id", "customer_id", "type", "status"),
+            CollateralType.class, CollateralStatus.class),
+    ENCUMBRANCE("encumbrance", "encumbrance_id", columns(
+            "encumbrance_id", String.class, "collateral_id", String.class, "loan_id", String.class,
+            "customer_id", String.class, "amount", BigDecimal.class, "currency", String.class,
+            "type", String.class, "status", String.class, "effective_date", LocalDateTime.class,
+            "expiry_date", LocalDateTime.class, "created_at", LocalDateTime.class,
+            "updated_at", LocalDateTime.class, "created_by", String.class, "updated_by", String.class,
+            "description", String.class, "priority", Integer.class, "legal_reference", String.class,
+            "notes", String.class),
+            List.of("encumbrance_id", "collateral_id", "customer_id", "amount", "type", "status"),
+            EncumbranceType.class, EncumbranceStatus.class),
+    TITLE_REGISTRY("title_registry", "title_id", columns(
+            "title_id", String.class, "collateral_id", String.class, "title_number", String.class,
+            "legal_description", String.class, "status", String.class, "current_owner", String.class,
+            "previous_owner", String.class, "registration_date", LocalDateTime.class, "is_valid", Boolean.class,
+            "verification_date", LocalDateTime.class, "created_at", LocalDateTime.class,
+            "updated_at", LocalDateTime.class, "created_by", String.class, "updated_by", String.class,
+            "message", String.class, "notes", String.class),
+            List.of("title_id", "collateral_id", "status"),
+            null, TitleRegistry.TitleStatus.class);
+
+    private final String tableName;
+    private final String keyColumn;
+    private final Map<String, Class<?>> columns;
+    private final List<String> requiredColumns;
+    private final Class<? extends Enum<?>> typeEnum;
+    private final Class<? extends Enum<?>> statusEnum;
+
+    ImportTable(String tableName, String keyColumn, Map<String, Class<?>> columns, List<String> requiredColumns,
+            Class<? extends Enum<?>> typeEnum, Class<? extends Enum<?>> statusEnum) {
+        this.tableName = tableName;
+        this.keyColumn = keyColumn;
+        this.columns = columns;
+        this.requiredColumns = requiredColumns;
+        this.typeEnum = typeEnum;
+        this.statusEnum = statusEnum;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    public Map<String, Class<?>> getColumns() {
+        return columns;
+    }
+
+    public List<String> getRequiredColumns() {
+        return requiredColumns;
+    }
+
+    public Class<? extends Enum<?>> getTypeEnum() {
+        return typeEnum;
+    }
+
+    public Class<? extends Enum<?>> getStatusEnum() {
+        return statusEnum;
+    }
+
+    private static Map<String, Class<?>> columns(Object... nameTypePairs) {
+        Map<String, Class<?>> columns = new LinkedHashMap<>();
+        for (int i = 0; i < nameTypePairs.length; i += 2) {
+            columns.put((String) nameTypePairs[i], (Class<?>) nameTypePairs[i + 1]);
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,47 @@
+package com.rjtmahinay.collateral.service;
+
+import com.rjtmahinay.collateral.config.CollateralProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Keyset pagination over the surrogate {@code id} column. Page queries take the last id seen ({@code afterId})
+ * and a row limit, and must order by id ascending.
+ */
+@Component
+@RequiredArgsConstructor
+public class KeysetPaginator {
+
+    private final CollateralProperties properties;
+
+    public long afterId(Long afterId) {
+        return afterId != null ? afterId : 0L;
+    }
+
+    public int limit(Integer limit) {
+        CollateralProperties.Pagination pagination = properties.getPagination();
+        if (limit == null || limit <= 0) {
+            return pagination.getDefaultLimit();
+        }
+        return Math.min(limit, pagination.getMaxLimit());
+    }
+
+    /**
+     * Streams every row after {@code afterId} by issuing one bounded page query at a time; the next page is only
+     * fetched once the subscriber has drained the current one.
+     */
+    public <T> Flux<T> stream(Long afterId, BiFunction<Long, Integer, Flux<T>> pageQuery, Function<T, Long> idOf) {
+        int pageSize = properties.getPagination().getStreamPageSize();
+        return pageQuery.apply(afterId(afterId), pageSize).collectList()
+                .expand(page -> page.size() < pageSize
+                        ? Mono.<List<T>>empty()
+                        : pageQuery.apply(idOf.apply(page.get(page.size() - 1)), pageSize).collectList())
+                .concatMapIterable(Function.identity(), 1);
+    }
+}
@@ -0,0 +1,124 @@
+package com.rjtmahinay.collateral.service;
+
+import com.rjtmahinay.collateral.dto.AutoLoanDto.LoanToValueRequest;
+import com.rjtmahinay.collateral.dto.AutoLoanDto.LoanToValueResponse;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes loan-to-value for a chunk of requests in one loop. Amounts with at most two decimal places are
+ * handled as long cents and the ratio as long basis points (scale 4, HALF_UP), so risk bands and approval are
+ * integer comparisons; anything wider falls back to the same BigDecimal arithmetic as the single-request path.
+ */
+@Component
+public class LtvBatchCalculator {
+
+    // Risk band upper bounds and the approval limit, in basis points of LTV (scale 4)
+    static final long LOW_RISK_MAX_BP = 7_000;
+    static final long MEDIUM_RISK_MAX_BP = 8_000;
+    static final long APPROVAL_MAX_BP = 8_500;
+
+    private static final long MAX_LOAN_CENTS = Long.MAX_VALUE / 10_000;
+    private static final long MAX_VALUE_CENTS = Long.MAX_VALUE / 100;
+    private static final String MESSAGE = "Auto loan LTV calculation completed";
+
+    public List<LoanToValueResponse> calculate(List<LoanToValueRequest> requests) {
+        LocalDateTime calculationDate = LocalDateTime.now();
+        List<LoanToValueResponse> responses = new ArrayList<>(requests.size());
+        for (LoanToValueRequest request : requests) {
+            responses.add(calculate(request, calculationDate));
+        }
+        return responses;
+    }
+
+    private LoanToValueResponse calculate(LoanToValueRequest request, LocalDateTime calculationDate) {
+        BigDecimal loanAmount = request.getLoanAmount();
+        BigDecimal vehicleValue = request.getVehicleValue();
+        if (loanAmount == null || vehicleValue == null) {
+            return error(request, "Loan amount and vehicle value are required");
+        }
+        if (vehicleValue.signum() <= 0) {
+            return error(request, "Vehicle value must be greater than zero");
+        }
+
+        long loanCents = toCents(loanAmount, MAX_LOAN_CENTS);
+        long valueCents = toCents(vehicleValue, MAX_VALUE_CENTS);
+        if (loanCents < 0 || valueCents < 0) {
+            return calculateExact(request, calculationDate);
+        }
+
+        long ltvBp = divideHalfUp(loanCents * 10_000, valueCents);
+        if (ltvBp > MAX_VALUE_CENTS) {
+            return calculateExact(request, calculationDate);
+        }
+        return LoanToValueResponse.builder()
+                .collateralId(request.getCollateralId())
+                .loanAmount(loanAmount)
+                .vehicleValue(vehicleValue)
+                .ltvRatio(BigDecimal.valueOf(ltvBp, 4))
+                .ltvPercentage(BigDecimal.valueOf(ltvBp * 100, 4))
+                .riskAssessment(riskAssessment(ltvBp))
+                .approved(ltvBp <= APPROVAL_MAX_BP)
+                .maxRecommendedLoan(BigDecimal.valueOf(valueCents * 85, 4))
+                .status("SUCCESS")
+                .message(MESSAGE)
+                .calculationDate(calculationDate)
+                .build();
+    }
+
+    private LoanToValueResponse calculateExact(LoanToValueRequest request, LocalDateTime calculationDate) {
+        BigDecimal ltvRatio = request.getLoanAmount().divide(request.getVehicleValue(), 4, RoundingMode.HALF_UP);
+        long ltvBp = ltvRatio.unscaledValue().bitLength() < 63 ? ltvRatio.unscaledValue().longValue() : Long.MAX_VALUE;
+        return LoanToValueResponse.builder()
+                .collateralId(request.getCollateralId())
+                .loanAmount(request.getLoanAmount())
+                .vehicleValue(request.getVehicleValue())
+                .ltvRatio(ltvRatio)
+                .ltvPercentage(ltvRatio.multiply(BigDecimal.valueOf(100)))
+                .riskAssessment(riskAssessment(ltvBp))
+                .approved(ltvBp <= APPROVAL_MAX_BP)
+                .maxRecommendedLoan(request.getVehicleValue().multiply(BigDecimal.valueOf(85, 2)))
+                .status("SUCCESS")
+                .message(MESSAGE)
+                .calculationDate(calculationDate)
+                .build();
+    }
+
+    static String riskAssessment(long ltvBp) {
+        if (ltvBp <= LOW_RISK_MAX_BP)
+            return "LOW_RISK";
+        if (ltvBp <= MEDIUM_RISK_MAX_BP)
+            return "MEDIUM_RISK";
+        if (ltvBp <= APPROVAL_MAX_BP)
+            return "HIGH_RISK";
+        return "EXCESSIVE_RISK";
+    }
+
+    // Non-negative amount in cents, or -1 when it is negative, has sub-cent digits or exceeds max
+    private static long toCents(BigDecimal amount, long max) {
+        if (amount.signum() < 0 || amount.scale() > 2 || amount.precision() - amount.scale() > 16) {
+            return -1;
+        }
+        long cents = amount.movePointRight(2).longValue();
+        return cents <= max ? cents : -1;
+    }
+
+    private static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        return remainder >= divisor - remainder ? quotient + 1 : quotient;
+    }
+
+    private static LoanToValueResponse error(LoanToValueRequest request, String message) {
+        return LoanToValueResponse.builder()
+                .collateralId(request.getCollateralId())
+                .status("ERROR")
+                .message(message)
+                .build();
+    }
+}
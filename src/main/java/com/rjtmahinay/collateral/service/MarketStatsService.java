@@ -0,0 +1,201 @@
+package com.rjtmahinay.collateral.service;
+
+import com.rjtmahinay.collateral.dto.MarketStatsDrift;
+import com.rjtmahinay.collateral.dto.MarketTrend;
+import com.rjtmahinay.collateral.model.AutoValuation;
+import com.rjtmahinay.collateral.model.MarketStats;
+import com.rjtmahinay.collateral.repository.AutoValuationRepository;
+import com.rjtmahinay.collateral.repository.MarketStatsRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Maintains the market_stats table incrementally as valuations are written. All valuation writes go through
+ * {@link #saveValuation} and {@link #deleteValuation} so the aggregates change in the same transaction as the row.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MarketStatsService {
+
+    private static final Comparator<Bucket> BUCKET_ORDER = Comparator.comparing(Bucket::type)
+            .thenComparing(Bucket::location)
+            .thenComparing(Bucket::make)
+            .thenComparing(Bucket::model)
+            .thenComparing(Bucket::modelYear)
+            .thenComparing(Bucket::periodStart);
+
+    private final AutoValuationRepository autoValuationRepository;
+    private final MarketStatsRepository marketStatsRepository;
+    private final TransactionalOperator transactionalOperator;
+
+    public Mono<AutoValuation> saveValuation(AutoValuation valuation) {
+        Mono<AutoValuation> previous = valuation.getId() != null
+                ? autoValuationRepository.findById(valuation.getId())
+                : Mono.empty();
+
+        // The previous version is retracted after the save so its bucket's MIN/MAX are recomputed without it
+        return previous.map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(replaced -> autoValuationRepository.save(valuation)
+                        .flatMap(saved -> replaced.map(this::retract).orElse(Mono.empty())
+                                .then(record(saved))
+                                .thenReturn(saved)))
+                .as(transactionalOperator::transactional);
+    }
+
+    /**
+     * Inserts new valuations with one multi-row INSERT and folds them into market_stats with one statement per
+     * bucket instead of one per valuation. Buckets are written in key order so concurrent batches that share
+     * buckets lock them in the same order instead of deadlocking.
+     */
+    public Mono<Long> saveNewValuations(List<AutoValuation> valuations) {
+        Map<Bucket, BucketDelta> deltas = new TreeMap<>(BUCKET_ORDER);
+        for (AutoValuation valuation : valuations) {
+            Bucket bucket = bucketOf(valuation);
+            if (bucket != null) {
+                deltas.computeIfAbsent(bucket, key -> new BucketDelta()).add(valuation.getEstimatedValue());
+            }
+        }
+
+        return autoValuationRepository.insertAll(valuations)
+                .flatMap(inserted -> Flux.fromIterable(deltas.entrySet())
+                        .concatMap(entry -> record(entry.getKey(), entry.getValue()))
+                        .then(Mono.just(inserted)))
+                .as(transactionalOperator::transactional);
+    }
+
+    public Mono<Void> deleteValuation(AutoValuation valuation) {
+        return autoValuationRepository.deleteById(valuation.getId())
+                .then(retract(valuation))
+                .as(transactionalOperator::transactional);
+    }
+
+    public Flux<MarketStats> getBucketHistory(String type, String location, String make, String model,
+            Integer modelYear) {
+        return marketStatsRepository.findBucketHistory(type, location, normalize(make), normalize(model),
+                modelYear != null ? modelYear : 0);
+    }
+
+    public Mono<BigDecimal> getMedianValue(String type, String location, String make, String model,
+            Integer modelYear) {
+        return marketStatsRepository.findMedianValue(type, location, normalize(make), normalize(model),
+                modelYear != null ? modelYear : 0);
+    }
+
+    public Flux<MarketTrend> getTrends(String type, String location) {
+        return marketStatsRepository.findTrends(type, location);
+    }
+
+    public Mono<Integer> rebuild() {
+        log.info("Rebuilding market statistics from auto valuations");
+
+        return marketStatsRepository.deleteAllBuckets()
+                .then(marketStatsRepository.rebuildFromValuations())
+                .as(transactionalOperator::transactional)
+                .doOnSuccess(buckets -> log.info("Market statistics rebuilt - {} bucket(s)", buckets));
+    }
+
+    public Flux<MarketStatsDrift> findDrift() {
+        return marketStatsRepository.findDrift()
+                .doOnNext(drift -> log.warn("Market statistics drift for {} {} {} {} {} {} - recorded: {}/{}, actual: {}/{}",
+                        drift.getType(), drift.getLocation(), drift.getMake(), drift.getModel(),
+                        drift.getModelYear(), drift.getPeriodStart(), drift.getRecordedCount(),
+                        drift.getRecordedSum(), drift.getActualCount(), drift.getActualSum()));
+    }
+
+    private Mono<Void> record(AutoValuation valuation) {
+        Bucket bucket = bucketOf(valuation);
+        if (bucket == null) {
+            return Mono.empty();
+        }
+        BigDecimal value = valuation.getEstimatedValue();
+        return upsert(bucket, 1, value, value, value);
+    }
+
+    private Mono<Void> record(Bucket bucket, BucketDelta delta) {
+        return upsert(bucket, delta.count, delta.sum, delta.min, delta.max);
+    }
+
+    private Mono<Void> upsert(Bucket bucket, long count, BigDecimal sum, BigDecimal min, BigDecimal max) {
+        Mono<Long> upsert = marketStatsRepository.upsertBucket(bucket.type(), bucket.location(), bucket.make(),
+                bucket.model(), bucket.modelYear(), bucket.periodStart(), count, sum, min, max);
+        return upsert
+                // H2's MERGE can still lose the race to create the bucket; the failed statement does not abort
+                // the transaction there, and PostgreSQL's ON CONFLICT never gets here
+                .onErrorResume(DataIntegrityViolationException.class, error -> upsert)
+                .then();
+    }
+
+    private Mono<Void> retract(AutoValuation valuation) {
+        Bucket bucket = bucketOf(valuation);
+        if (bucket == null) {
+            return Mono.empty();
+        }
+
+        return marketStatsRepository.decrementBucket(bucket.type(), bucket.location(), bucket.make(),
+                        bucket.model(), bucket.modelYear(), bucket.periodStart(), valuation.getEstimatedValue())
+                .then(marketStatsRepository.refreshBucketRange(bucket.type(), bucket.location(), bucket.make(),
+                        bucket.model(), bucket.modelYear(), bucket.periodStart()))
+                .then(marketStatsRepository.deleteEmptyBucket(bucket.type(), bucket.location(), bucket.make(),
+                        bucket.model(), bucket.modelYear(), bucket.periodStart()))
+                .then();
+    }
+
+    // Must match MarketStatsQueries.ELIGIBLE_VALUATION, BUCKET_COLUMNS and PERIOD
+    private Bucket bucketOf(AutoValuation valuation) {
+        LocalDateTime periodDate = valuation.getValuationDate() != null
+                ? valuation.getValuationDate()
+                : valuation.getCreatedAt();
+        if (valuation.getStatus() != AutoValuation.ValuationStatus.VALUATION_COMPLETED
+                || valuation.getEstimatedValue() == null || valuation.getType() == null
+                || valuation.getLocation() == null || periodDate == null) {
+            return null;
+        }
+        return new Bucket(valuation.getType(), valuation.getLocation(), normalize(valuation.getMake()),
+                normalize(valuation.getModel()), valuation.getModelYear() != null ? valuation.getModelYear() : 0,
+                periodDate.toLocalDate().withDayOfMonth(1));
+    }
+
+    // Must match MarketStatsQueries.MAKE and MODEL; SQL TRIM strips spaces only
+    private static String normalize(String value) {
+        return value != null
+                ? StringUtils.trimTrailingCharacter(StringUtils.trimLeadingCharacter(value, ' '), ' ')
+                        .toUpperCase(Locale.ROOT)
+                : "";
+    }
+
+    private record Bucket(String type, String location, String make, String model, Integer modelYear,
+            LocalDate periodStart) {
+    }
+
+    private static final class BucketDelta {
+        private long count;
+        private BigDecimal sum = BigDecimal.ZERO;
+        private BigDecimal min;
+        private BigDecimal max;
+
+        void add(BigDecimal value) {
+            count++;
+            sum = sum.add(value);
+            min = min == null || value.compareTo(min) < 0 ? value : min;
+            max = max == null || value.compareTo(max) > 0 ? value : max;
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package com.rjtmahinay.collateral.service;
+
+import com.rjtmahinay.collateral.config.CollateralProperties;
+import com.rjtmahinay.collateral.dto.ImportReport;
+import com.rjtmahinay.collateral.dto.ImportReport.TableReport;
+import com.rjtmahinay.collateral.repository.MultiRowInsert;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Offline initial load of collateral, encumbrance and title registry rows from CSV files, in that order so every
+ * collateral_id reference can be checked in memory before it reaches the database. Files are parsed one record
+ * at a time and written with multi-row INSERTs, {@code concurrency} batches at a time; with {@code defer-indexes}
+ * the secondary indexes declared in the schema script are dropped for the load and built once at the end. Rows
+ * that fail validation or their insert are rejected and counted without stopping the load.
+ */
+@Service
+@Slf4j
+public class PortfolioImportService {
+
+    private static final Pattern CREATE_INDEX = Pattern.compile(
+            "CREATE\\s+INDEX\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?(\\w+)\\s+ON\\s+(\\w+)\\s*(?:USING\\s+\\w+\\s*)?\\(",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final String RECOMPUTE_BALANCES = "UPDATE collateral SET "
+            + "encumbered_value = COALESCE((SELECT SUM(e.amount) FROM encumbrance e "
+            + "WHERE e.collateral_id = collateral.collateral_id AND e.status = 'ACTIVE'), 0), "
+            + "available_value = market_value - COALESCE((SELECT SUM(e.amount) FROM encumbrance e "
+            + "WHERE e.collateral_id = collateral.collateral_id AND e.status = 'ACTIVE'), 0), "
+            + "version = version + 1";
+
+    private final DatabaseClient databaseClient;
+    private final ResourceLoader resourceLoader;
+    private final CollateralProperties properties;
+    private final List<String> schemaLocations;
+
+    public PortfolioImportService(DatabaseClient databaseClient, ResourceLoader resourceLoader,
+            CollateralProperties properties,
+            @Value("${spring.sql.init.schema-locations:classpath:schema.sql}") List<String> schemaLocations) {
+        this.databaseClient = databaseClient;
+        this.resourceLoader = resourceLoader;
+        this.properties = properties;
+        this.schemaLocations = schemaLocations;
+    }
+
+    public Mono<ImportReport> importPortfolio() {
+        CollateralProperties.BulkImport config = properties.getBulkImport();
+        List<ImportFile> files = new ArrayList<>();
+        addFile(files, ImportTable.COLLATERAL, config.getCollateralFile());
+        addFile(files, ImportTable.ENCUMBRANCE, config.getEncumbranceFile());
+        addFile(files, ImportTable.TITLE_REGISTRY, config.getTitleFile());
+        if (files.isEmpty()) {
+            return Mono.error(new IllegalArgumentException("No import files configured under collateral.bulk-import"));
+        }
+
+        List<IndexDefinition> indexes = config.isDeferIndexes()
+                ? secondaryIndexes(files.stream().map(ImportFile::table).toList())
+                : List.of();
+        boolean recomputeBalances = config.isRecomputeBalances()
+                && files.stream().anyMatch(file -> file.table() == ImportTable.ENCUMBRANCE);
+        // collateral_ids in the database; the concurrent inserts add each collateral once it is written
+        Set<String> collateralIds = ConcurrentHashMap.newKeySet();
+        long start = System.nanoTime();
+
+        return loadCollateralIds(collateralIds)
+                .then(dropIndexes(indexes))
+                .thenMany(Flux.fromIterable(files).concatMap(file -> importFile(file, collateralIds, config)))
+                .collectList()
+                .flatMap(tables -> timed(createIndexes(indexes))
+                        .zipWith(recomputeBalances ? timed(recomputeBalances()) : Mono.just(0L))
+                        .map(timings -> ImportReport.builder()
+                                .tables(tables)
+                                .indexRebuildMillis(timings.getT1())
+                                .balanceRecomputeMillis(timings.getT2())
+                                .elapsedMillis(Duration.ofNanos(System.nanoTime() - start).toMillis())
+                                .build()))
+                // Leave the schema as declared even when the load fails part way
+                .onErrorResume(error -> createIndexes(indexes).then(Mono.error(error)));
+    }
+
+    private Mono<TableReport> importFile(ImportFile file, Set<String> collateralIds,
+            CollateralProperties.BulkImport config) {
+        ImportTable table = file.table();
+        AtomicLong read = new AtomicLong();
+        AtomicLong inserted = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        // Only touched by the sequential validation stage, never by the concurrent inserts
+        Set<String> keysInFile = new HashSet<>();
+        long start = System.nanoTime();
+        log.info("Importing {} from {}", table.getTableName(), file.path());
+
+        Disposable progress = Flux.interval(config.getProgressInterval())
+                .subscribe(tick -> log.info("Import of {}: {} read, {} inserted, {} rejected ({} rows/s)",
+                        table.getTableName(), read.get(), inserted.get(), rejected.get(),
+                        rate(inserted.get(), System.nanoTime() - start)));
+
+        return readRecords(file.path())
+                .switchOnFirst((first, records) -> {
+                    if (!first.hasValue()) {
+                        return Flux.empty();
+                    }
+                    Header header = header(table, first.get());
+                    return records.skip(1)
+                            .map(record -> {
+                                long line = read.incrementAndGet();
+                                String error = validate(table, header, record, keysInFile, collateralIds);
+                                if (error != null) {
+                                    reject(table, line, error, rejected, config);
+                                    return new ParsedRow(line, null, null);
+                                }
+                                try {
+                                    return new ParsedRow(line, header.value(record, "collateral_id"),
+                                            bindValues(header, record));
+                                } catch (RuntimeException e) {
+                                    reject(table, line, e.getMessage(), rejected, config);
+                                    return new ParsedRow(line, null, null);
+                                }
+                            })
+                            .filter(row -> row.values() != null)
+                            .buffer(config.getBatchSize())
+                            .flatMap(batch -> insertBatch(table, header, batch, rejected, config),
+                                    config.getConcurrency())
+                            .doOnNext(rows -> {
+                                inserted.addAndGet(rows.size());
+                                // Later files may only reference collaterals that were actually written
+                                if (table == ImportTable.COLLATERAL) {
+                                    rows.forEach(row -> collateralIds.add(row.collateralId()));
+                                }
+                            });
+                })
+                .then(Mono.fromSupplier(() -> {
+                    long elapsed = System.nanoTime() - start;
+                    TableReport report = TableReport.builder()
+                            .table(table.getTableName())
+                            .file(file.path())
+                            .read(read.get())
+                            .inserted(inserted.get())
+                            .rejected(rejected.get())
+                            .elapsedMillis(Duration.ofNanos(elapsed).toMillis())
+                            .rowsPerSecond(rate(inserted.get(), elapsed))
+                            .build();
+                    log.info("Imported {}: {} read, {} inserted, {} rejected in {}ms ({} rows/s)",
+                            table.getTableName(), report.getRead(), report.getInserted(), report.getRejected(),
+                            report.getElapsedMillis(), report.getRowsPerSecond());
+                    return report;
+                }))
+                .doFinally(signal -> progress.dispose());
+    }
+
+    private Flux<List<String>> readRecords(String path) {
+        return Flux.using(
+                        () -> Files.newBufferedReader(Path.of(path), StandardCharsets.UTF_8),
+                        reader -> Flux.fromIterable(() -> new CsvRecordReader(reader)),
+                        this::closeQuietly)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Header header(ImportTable table, List<String> names) {
+        List<String> columns = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        Map<String, Class<?>> known = table.getColumns();
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).trim().toLowerCase(Locale.ROOT);
+            if (known.containsKey(name)) {
+                columns.add(name);
+                positions.add(i);
+            } else {
+                log.info("Ignoring column {} of {} import", name, table.getTableName());
+            }
+        }
+        for (String required : table.getRequiredColumns()) {
+            if (!columns.contains(required)) {
+                throw new IllegalArgumentException(
+                        "Missing required column " + required + " in " + table.getTableName() + " import");
+            }
+        }
+        MultiRowInsert.Builder<ParsedRow> insert = MultiRowInsert.into(table.getTableName());
+        for (int i = 0; i < columns.size(); i++) {
+            int column = i;
+            insert.column(columns.get(i), known.get(columns.get(i)), row -> row.values()[column]);
+        }
+        return new Header(table, columns, positions.stream().mapToInt(Integer::intValue).toArray(), names.size(),
+                insert.build());
+    }
+
+    private String validate(ImportTable table, Header header, List<String> record, Set<String> keysInFile,
+            Set<String> collateralIds) {
+        if (record.size() != header.fieldCount()) {
+            return "expected " + header.fieldCount() + " fields but found " + record.size();
+        }
+        for (String required : table.getRequiredColumns()) {
+            if (header.value(record, required).isBlank()) {
+                return required + " is required";
+            }
+        }
+        if (table.getTypeEnum() != null && !isConstant(table.getTypeEnum(), header.value(record, "type"))) {
+            return "unknown type " + header.value(record, "type");
+        }
+        if (!isConstant(table.getStatusEnum(), header.value(record, "status"))) {
+            return "unknown status " + header.value(record, "status");
+        }
+
+        String collateralId = header.value(record, "collateral_id");
+        // A collateral_id already in the database is rejected by the unique constraint on insert
+        if (table == ImportTable.COLLATERAL) {
+            return keysInFile.add(collateralId) ? null : "duplicate " + table.getKeyColumn() + " " + collateralId;
+        }
+        return collateralIds.contains(collateralId) ? null : "unknown collateral_id " + collateralId;
+    }
+
+    private Object[] bindValues(Header header, List<String> record) {
+        Object[] values = new Object[header.columns().size()];
+        for (int i = 0; i < values.length; i++) {
+            String column = header.columns().get(i);
+            Class<?> type = header.table().getColumns().get(column);
+            String text = record.get(header.positions()[i]);
+            try {
+                values[i] = text.isEmpty() ? null : convert(text, type);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("invalid " + column + " '" + text + "'", e);
+            }
+        }
+        return values;
+    }
+
+    private Object convert(String text, Class<?> type) {
+        if (type == BigDecimal.class) {
+            return new BigDecimal(text);
+        }
+        if (type == LocalDateTime.class) {
+            return text.length() == 10
+                    ? LocalDate.parse(text).atStartOfDay()
+                    : LocalDateTime.parse(text.replace(' ', 'T'));
+        }
+        if (type == Integer.class) {
+            return Integer.valueOf(text);
+        }
+        if (type == Boolean.class) {
+            if (!text.equalsIgnoreCase("true") && !text.equalsIgnoreCase("false")) {
+                throw new IllegalArgumentException("not a boolean");
+            }
+            return Boolean.valueOf(text);
+        }
+        return text;
+    }
+
+    // Falls back to row-by-row inserts so one bad row only rejects itself; emits the rows that were inserted
+    private Mono<List<ParsedRow>> insertBatch(ImportTable table, Header header, List<ParsedRow> batch,
+            AtomicLong rejected, CollateralProperties.BulkImport config) {
+        return insert(header, batch)
+                .thenReturn(batch)
+                .onErrorResume(error -> Flux.fromIterable(batch)
+                        .concatMap(row -> insert(header, List.of(row))
+                                .thenReturn(row)
+                                .onErrorResume(rowError -> {
+                                    reject(table, row.line(), rowError.getMessage(), rejected, config);
+                                    return Mono.empty();
+                                }))
+                        .collectList());
+    }
+
+    private Mono<Long> insert(Header header, List<ParsedRow> rows) {
+        return header.insert().insertAll(databaseClient, rows);
+    }
+
+    private void reject(ImportTable table, long line, String reason, AtomicLong rejected,
+            CollateralProperties.BulkImport config) {
+        if (rejected.incrementAndGet() <= config.getMaxLoggedRejections()) {
+            log.warn("Rejected {} record {}: {}", table.getTableName(), line, reason);
+        }
+    }
+
+    private Mono<Void> loadCollateralIds(Set<String> collateralIds) {
+        return databaseClient.sql("SELECT collateral_id FROM collateral")
+                .map(row -> row.get("collateral_id", String.class))
+                .all()
+                .doOnNext(collateralIds::add)
+                .then();
+    }
+
+    private List<IndexDefinition> secondaryIndexes(List<ImportTable> tables) {
+        Set<String> tableNames = new HashSet<>();
+        tables.forEach(table -> tableNames.add(table.getTableName()));
+
+        List<IndexDefinition> indexes = new ArrayList<>();
+        for (String location : schemaLocations) {
+            for (String statement : readScript(location).split(";")) {
+                String ddl = statement.lines()
+                        .filter(line -> !line.strip().startsWith("--"))
+                        .collect(Collectors.joining("\n"))
+                        .strip();
+                Matcher matcher = CREATE_INDEX.matcher(ddl);
+                if (matcher.lookingAt() && tableNames.contains(matcher.group(2).toLowerCase(Locale.ROOT))) {
+                    indexes.add(new IndexDefinition(matcher.group(1), ddl));
+                }
+            }
+        }
+        return indexes;
+    }
+
+    private Mono<Void> dropIndexes(List<IndexDefinition> indexes) {
+        return Flux.fromIterable(indexes)
+                .concatMap(index -> databaseClient.sql("DROP INDEX IF EXISTS " + index.name()).then())
+                .then(Mono.fromRunnable(() -> {
+                    if (!indexes.isEmpty()) {
+                        log.info("Dropped {} secondary index(es) for the import", indexes.size());
+                    }
+                }));
+    }
+
+    private Mono<Void> createIndexes(List<IndexDefinition> indexes) {
+        return Flux.fromIterable(indexes)
+                .concatMap(index -> databaseClient.sql(index.ddl()).then())
+                .then();
+    }
+
+    private Mono<Long> recomputeBalances() {
+        log.info("Recomputing collateral balances from active encumbrances");
+        return databaseClient.sql(RECOMPUTE_BALANCES).fetch().rowsUpdated();
+    }
+
+    private Mono<Long> timed(Mono<?> work) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return work.then(Mono.fromSupplier(() -> Duration.ofNanos(System.nanoTime() - start).toMillis()));
+        });
+    }
+
+    private String readScript(String location) {
+        try (InputStream in = resourceLoader.getResource(location).getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read schema script " + location, e);
+        }
+    }
+
+    private void closeQuietly(BufferedReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            log.warn("Failed to close import file", e);
+        }
+    }
+
+    private static boolean isConstant(Class<? extends Enum<?>> type, String name) {
+        for (Enum<?> constant : type.getEnumConstants()) {
+            if (constant.name().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long rate(long rows, long elapsedNanos) {
+        return rows * 1_000_000_000L / Math.max(1, elapsedNanos);
+    }
+
+    private static void addFile(List<ImportFile> files, ImportTable table, String path) {
+        if (path != null && !path.isBlank()) {
+            files.add(new ImportFile(table, path));
+        }
+    }
+
+    private record ImportFile(ImportTable table, String path) {
+    }
+
+    private record IndexDefinition(String name, String ddl) {
+    }
+
+    private record ParsedRow(long line, String collateralId, Object[] values) {
+    }
+
+    private record Header(ImportTable table, List<String> columns, int[] positions, int fieldCount,
+            MultiRowInsert<ParsedRow> insert) {
+
+        String value(List<String> record, String column) {
+            int index = columns.indexOf(column);
+            return record.get(positions[index]).trim();
+        }
+    }
+}
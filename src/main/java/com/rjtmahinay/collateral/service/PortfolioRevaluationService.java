@@ -0,0 +1,186 @@
+package com.rjtmahinay.collateral.service;
+
+import com.rjtmahinay.collateral.config.CollateralProperties;
+import com.rjtmahinay.collateral.model.AutoValuation;
+import com.rjtmahinay.collateral.model.Collateral;
+import com.rjtmahinay.collateral.model.RevaluationCheckpoint;
+import com.rjtmahinay.collateral.repository.CollateralRepository;
+import com.rjtmahinay.collateral.repository.RevaluationCheckpointRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Marks the whole book to market: streams the selected collateral in id order (one index-ordered stream per
+ * status, merged by id), writes one valuation INSERT and one collateral UPDATE per batch, and checkpoints the last
+ * committed id so an interrupted run resumes where it stopped instead of starting over. A batch committed just
+ * before a crash, ahead of its checkpoint, is revalued again on resume.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(prefix = "collateral.revaluation", name = "enabled", havingValue = "true")
+public class PortfolioRevaluationService {
+
+    static final String JOB_NAME = "portfolio-revaluation";
+
+    private static final Comparator<Collateral> BY_ID = Comparator.comparing(Collateral::getId);
+
+    private final CollateralRepository collateralRepository;
+    private final RevaluationCheckpointRepository checkpointRepository;
+    private final MarketStatsService marketStatsService;
+    private final ChangeEventService changeEventService;
+    private final CollateralCache collateralCache;
+    private final KeysetPaginator keysetPaginator;
+    private final TransactionalOperator transactionalOperator;
+    private final CollateralProperties properties;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Counter processed;
+    // Collateral still to revalue in the current run, and when its checkpoint last advanced
+    private final AtomicLong remaining = new AtomicLong();
+    private final AtomicLong lastCheckpointMillis = new AtomicLong();
+    private final AtomicLong throughput = new AtomicLong();
+
+    public PortfolioRevaluationService(CollateralRepository collateralRepository,
+            RevaluationCheckpointRepository checkpointRepository, MarketStatsService marketStatsService,
+            ChangeEventService changeEventService, CollateralCache collateralCache, KeysetPaginator keysetPaginator,
+            TransactionalOperator transactionalOperator, CollateralProperties properties,
+            MeterRegistry meterRegistry) {
+        this.collateralRepository = collateralRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.marketStatsService = marketStatsService;
+        this.changeEventService = changeEventService;
+        this.collateralCache = collateralCache;
+        this.keysetPaginator = keysetPaginator;
+        this.transactionalOperator = transactionalOperator;
+        this.properties = properties;
+
+        this.processed = Counter.builder("collateral.revaluation.processed")
+                .description("Collateral revalued by the portfolio revaluation job")
+                .register(meterRegistry);
+        meterRegistry.gauge("collateral.revaluation.remaining", remaining);
+        meterRegistry.gauge("collateral.revaluation.throughput", throughput);
+        meterRegistry.more().timeGauge("collateral.revaluation.checkpoint.lag", List.of(), lastCheckpointMillis,
+                TimeUnit.MILLISECONDS,
+                last -> running.get() ? System.currentTimeMillis() - last.get() : 0);
+    }
+
+    @Scheduled(cron = "${collateral.revaluation.cron:0 0 2 * * *}")
+    public Mono<Long> revalue() {
+        return Mono.defer(() -> {
+            if (!running.compareAndSet(false, true)) {
+                log.warn("Portfolio revaluation already running - skipping");
+                return Mono.just(0L);
+            }
+            return startOrResume()
+                    .flatMap(this::run)
+                    .doFinally(signal -> running.set(false));
+        });
+    }
+
+    private Mono<RevaluationCheckpoint> startOrResume() {
+        LocalDateTime now = LocalDateTime.now();
+        return checkpointRepository.findByJobName(JOB_NAME)
+                .defaultIfEmpty(RevaluationCheckpoint.builder().jobName(JOB_NAME).completed(true).build())
+                .flatMap(checkpoint -> {
+                    if (!Boolean.TRUE.equals(checkpoint.getCompleted())) {
+                        log.info("Resuming portfolio revaluation after collateral id {} - {} already processed",
+                                checkpoint.getLastCollateralId(), checkpoint.getProcessedCount());
+                        return Mono.just(checkpoint);
+                    }
+                    checkpoint.setLastCollateralId(0L);
+                    checkpoint.setProcessedCount(0L);
+                    checkpoint.setCompleted(false);
+                    checkpoint.setStartedAt(now);
+                    checkpoint.setUpdatedAt(now);
+                    checkpoint.setCompletedAt(null);
+                    log.info("Starting portfolio revaluation");
+                    return checkpointRepository.save(checkpoint);
+                });
+    }
+
+    private Mono<Long> run(RevaluationCheckpoint checkpoint) {
+        CollateralProperties.Revaluation config = properties.getRevaluation();
+        List<String> types = config.getTypes().stream().map(Enum::name).toList();
+        List<String> statuses = config.getStatuses().stream().map(Enum::name).toList();
+        long resumedFrom = checkpoint.getProcessedCount();
+        long start = System.nanoTime();
+        lastCheckpointMillis.set(System.currentTimeMillis());
+
+        // One keyset stream per status, each read in (status, id) index order, merged back into id order
+        Flux<Collateral> collaterals = statuses.stream()
+                .map(status -> keysetPaginator.stream(checkpoint.getLastCollateralId(),
+                        (afterId, limit) -> collateralRepository.findForRevaluationAfter(status, types, afterId,
+                                limit),
+                        Collateral::getId))
+                .reduce(Flux.empty(), (merged, stream) -> merged.mergeComparingWith(stream, BY_ID));
+
+        return collateralRepository.countForRevaluationAfter(types, statuses, checkpoint.getLastCollateralId())
+                .doOnNext(remaining::set)
+                .thenMany(collaterals.buffer(config.getBatchSize())
+                        // Sequential emission keeps checkpoints in id order while batches are written concurrently
+                        .flatMapSequential(this::revalueBatch, config.getConcurrency(), 1)
+                        .concatMap(batch -> advance(checkpoint, batch)))
+                .then(Mono.defer(() -> complete(checkpoint)))
+                .map(completed -> completed.getProcessedCount() - resumedFrom)
+                .doOnSuccess(count -> {
+                    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+                    throughput.set(count * 1000 / Math.max(1, elapsed.toMillis()));
+                    log.info("Portfolio revaluation completed - {} collateral(s) in {}ms ({}/s)", count,
+                            elapsed.toMillis(), throughput.get());
+                })
+                .doOnError(error -> log.error("Portfolio revaluation stopped after collateral id {} - will resume",
+                        checkpoint.getLastCollateralId(), error));
+    }
+
+    private Mono<List<Collateral>> revalueBatch(List<Collateral> batch) {
+        LocalDateTime now = LocalDateTime.now();
+        List<AutoValuation> valuations = batch.stream()
+                .map(collateral -> CollateralService.newAutoValuation(collateral, now))
+                .toList();
+        List<String> collateralIds = batch.stream().map(Collateral::getCollateralId).toList();
+
+        return marketStatsService.saveNewValuations(valuations)
+                .then(collateralRepository.markRevaluated(collateralIds, now))
+                .then(changeEventService.recordAll(ChangeEventService.COLLATERAL, "REVALUED", valuations,
+                        AutoValuation::getCollateralId))
+                .thenMany(Flux.fromIterable(collateralIds).concatMap(collateralCache::evict))
+                .then(Mono.just(batch))
+                .as(transactionalOperator::transactional);
+    }
+
+    private Mono<RevaluationCheckpoint> advance(RevaluationCheckpoint checkpoint, List<Collateral> batch) {
+        checkpoint.setLastCollateralId(batch.get(batch.size() - 1).getId());
+        checkpoint.setProcessedCount(checkpoint.getProcessedCount() + batch.size());
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        return checkpointRepository.save(checkpoint)
+                .doOnSuccess(saved -> {
+                    processed.increment(batch.size());
+                    remaining.addAndGet(-batch.size());
+                    lastCheckpointMillis.set(System.currentTimeMillis());
+                });
+    }
+
+    private Mono<RevaluationCheckpoint> complete(RevaluationCheckpoint checkpoint) {
+        LocalDateTime now = LocalDateTime.now();
+        checkpoint.setCompleted(true);
+        checkpoint.setUpdatedAt(now);
+        checkpoint.setCompletedAt(now);
+        remaining.set(0);
+        return checkpointRepository.save(checkpoint);
+    }
+}
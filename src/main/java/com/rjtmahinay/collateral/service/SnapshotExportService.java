@@ -0,0 +1,198 @@
+package com.rjtmahinay.collateral.service;
+
+import com.rjtmahinay.collateral.config.CollateralProperties;
+import com.rjtmahinay.collateral.dto.ExportPartition;
+import io.r2dbc.spi.ColumnMetadata;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streams a table as CSV straight from the result rows, without mapping them to entities. Rows are read one
+ * keyset page at a time and each page is encoded into a single buffer, so memory stays bounded by the page size
+ * however large the table is. All pages are read in one read-only REPEATABLE READ transaction, so the export is a
+ * consistent snapshot even while the table is being written; that transaction holds a pooled connection for the
+ * length of the download.
+ */
+@Service
+@Slf4j
+public class SnapshotExportService {
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator snapshotOperator;
+    private final CollateralProperties properties;
+
+    public SnapshotExportService(DatabaseClient databaseClient, ReactiveTransactionManager transactionManager,
+            CollateralProperties properties) {
+        this.databaseClient = databaseClient;
+        this.properties = properties;
+
+        DefaultTransactionDefinition snapshot = new DefaultTransactionDefinition();
+        snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        snapshot.setReadOnly(true);
+        this.snapshotOperator = TransactionalOperator.create(transactionManager, snapshot);
+    }
+
+    /**
+     * Exports every row of {@code table}, optionally only one {@code type} and/or {@code status} partition, as
+     * CSV with a header line, in id order.
+     */
+    public Flux<DataBuffer> exportCsv(ExportTable table, String type, String status) {
+        log.info("Exporting {} (type: {}, status: {})", table, type, status);
+
+        int pageSize = properties.getExport().getPageSize();
+        String sql = "SELECT * FROM " + table.getTableName() + " WHERE id > :afterId"
+                + (type != null ? " AND type = :type" : "")
+                + (status != null ? " AND status = :status" : "")
+                + " ORDER BY id LIMIT :limit";
+
+        return fetchPage(sql, 0L, type, status, pageSize, true)
+                .flatMap(first -> first.rows > 0 ? Mono.just(first) : headerOnlyPage(table))
+                .expand(page -> page.rows < pageSize
+                        ? Mono.empty()
+                        : fetchPage(sql, page.lastId, type, status, pageSize, false))
+                .filter(page -> page.csv.length() > 0)
+                .<DataBuffer>map(page -> DefaultDataBufferFactory.sharedInstance
+                        .wrap(page.csv.toString().getBytes(StandardCharsets.UTF_8)))
+                .as(snapshotOperator::transactional);
+    }
+
+    /**
+     * Row counts per type and status, so large exports can be split into partitions downloaded in parallel.
+     */
+    public Flux<ExportPartition> getPartitions(ExportTable table) {
+        return databaseClient.sql("SELECT type, status, COUNT(*) AS row_count FROM " + table.getTableName()
+                        + " GROUP BY type, status ORDER BY type, status")
+                .map(row -> ExportPartition.builder()
+                        .type(row.get("type", String.class))
+                        .status(row.get("status", String.class))
+                        .rowCount(row.get("row_count", Long.class))
+                        .build())
+                .all();
+    }
+
+    // An empty result has no row metadata to take the header from, so read the column names from the schema
+    private Mono<CsvPage> headerOnlyPage(ExportTable table) {
+        return databaseClient.sql("SELECT column_name FROM information_schema.columns "
+                        + "WHERE table_schema = CURRENT_SCHEMA AND LOWER(table_name) = :tableName "
+                        + "ORDER BY ordinal_position")
+                .bind("tableName", table.getTableName())
+                .map(row -> row.get("column_name", String.class))
+                .all()
+                .collectList()
+                .map(columns -> {
+                    CsvPage page = new CsvPage(true);
+                    page.appendHeader(columns);
+                    return page;
+                });
+    }
+
+    private Mono<CsvPage> fetchPage(String sql, long afterId, String type, String status, int pageSize,
+            boolean header) {
+        return Mono.defer(() -> {
+            CsvPage page = new CsvPage(header);
+            DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql)
+                    .bind("afterId", afterId)
+                    .bind("limit", pageSize);
+            if (type != null) {
+                spec = spec.bind("type", type);
+            }
+            if (status != null) {
+                spec = spec.bind("status", status);
+            }
+            // Rows arrive one at a time, so appending to the page needs no synchronization
+            return spec.map((row, metadata) -> page.append(row, metadata))
+                    .all()
+                    .then(Mono.just(page));
+        });
+    }
+
+    private static final class CsvPage {
+
+        private final StringBuilder csv = new StringBuilder();
+        private final boolean header;
+        private int rows;
+        private long lastId;
+
+        private CsvPage(boolean header) {
+            this.header = header;
+        }
+
+        private long append(Row row, RowMetadata metadata) {
+            List<? extends ColumnMetadata> columns = metadata.getColumnMetadatas();
+            if (header && rows == 0) {
+                appendHeader(columns.stream().map(ColumnMetadata::getName).toList());
+            }
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    csv.append(',');
+                }
+                appendValue(row.get(i));
+            }
+            csv.append('\n');
+            rows++;
+            lastId = row.get("id", Long.class);
+            return lastId;
+        }
+
+        private void appendHeader(List<String> names) {
+            for (int i = 0; i < names.size(); i++) {
+                if (i > 0) {
+                    csv.append(',');
+                }
+                csv.append(names.get(i).toLowerCase(Locale.ROOT));
+            }
+            csv.append('\n');
+        }
+
+        private void appendValue(Object value) {
+            if (value == null) {
+                return;
+            }
+            if (value instanceof BigDecimal decimal) {
+                csv.append(decimal.toPlainString());
+            } else if (value instanceof Number || value instanceof Boolean) {
+                csv.append(value);
+            } else {
+                appendText(value.toString());
+            }
+        }
+
+        // RFC 4180: quote fields containing a separator, quote or line break, doubling embedded quotes
+        private void appendText(String text) {
+            boolean quote = false;
+            for (int i = 0; i < text.length() && !quote; i++) {
+                char c = text.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                csv.append(text);
+                return;
+            }
+            csv.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"') {
+                    csv.append('"');
+                }
+                csv.append(c);
+            }
+            csv.append('"');
+        }
+    }
+}
@@ -21,7 +21,8 @@ CREATE TABLE IF NOT EXISTS collateral (
     legal_description TEXT,
     ownership_documents TEXT,
     last_inspection_date TIMESTAMP,
-    risk_rating VARCHAR(50)
+    risk_rating VARCHAR(50),
+    version BIGINT NOT NULL DEFAULT 0
 );
 
 -- Create Encumbrance table
@@ -45,21 +46,25 @@ CREATE TABLE IF NOT EXISTS encumbrance (
     priority INTEGER DEFAULT 1,
     legal_reference VARCHAR(255),
     notes TEXT,
+    version BIGINT NOT NULL DEFAULT 0,
     FOREIGN KEY (collateral_id) REFERENCES collateral(collateral_id)
 );
 
 -- Create indexes for better performance
-CREATE INDEX IF NOT EXISTS idx_collateral_customer_id ON collateral(customer_id);
+-- (customer_id, status, available_value) serves findByCustomerId and the available-collateral range scan
+CREATE INDEX IF NOT EXISTS idx_collateral_customer_status_available ON collateral(customer_id, status, available_value);
 CREATE INDEX IF NOT EXISTS idx_collateral_account_id ON collateral(account_id);
-CREATE INDEX IF NOT EXISTS idx_collateral_status ON collateral(status);
+-- Keyset pages filtered on one status end in id, and order by (status, id) so the index returns them sorted
+CREATE INDEX IF NOT EXISTS idx_collateral_status_id ON collateral(status, id);
 CREATE INDEX IF NOT EXISTS idx_collateral_type ON collateral(type);
 
-CREATE INDEX IF NOT EXISTS idx_encumbrance_collateral_id ON encumbrance(collateral_id);
+-- amount is carried in the index so the per-collateral ACTIVE SUM never touches the table
+CREATE INDEX IF NOT EXISTS idx_encumbrance_collateral_status_amount ON encumbrance(collateral_id, status, amount);
 CREATE INDEX IF NOT EXISTS idx_encumbrance_customer_id ON encumbrance(customer_id);
 CREATE INDEX IF NOT EXISTS idx_encumbrance_loan_id ON encumbrance(loan_id);
-CREATE INDEX IF NOT EXISTS idx_encumbrance_status ON encumbrance(status);
+CREATE INDEX IF NOT EXISTS idx_encumbrance_status_id ON encumbrance(status, id);
 CREATE INDEX IF NOT EXISTS idx_encumbrance_effective_date ON encumbrance(effective_date);
-CREATE INDEX IF NOT EXISTS idx_encumbrance_expiry_date ON encumbrance(expiry_date);
+CREATE INDEX IF NOT EXISTS idx_encumbrance_status_expiry_date ON encumbrance(status, expiry_date, id);
 
 -- Create AutoValuation table
 CREATE TABLE IF NOT EXISTS auto_valuation (
@@ -68,6 +73,9 @@ CREATE TABLE IF NOT EXISTS auto_valuation (
     collateral_id VARCHAR(255) NOT NULL,
     type VARCHAR(100),
     location VARCHAR(255),
+    make VARCHAR(100),
+    model VARCHAR(100),
+    model_year INTEGER,
     description TEXT,
     status VARCHAR(50) NOT NULL,
     estimated_value DECIMAL(19,2),
@@ -92,7 +100,8 @@ CREATE TABLE IF NOT EXISTS title_registry (
     title_id VARCHAR(255) NOT NULL UNIQUE,
     collateral_id VARCHAR(255) NOT NULL,
     title_number VARCHAR(255),
-    legal_description TEXT,
+    -- VARCHAR rather than TEXT: H2 stores TEXT as a CLOB, which cannot be indexed
+    legal_description VARCHAR,
     status VARCHAR(50) NOT NULL,
     current_owner VARCHAR(255),
     previous_owner VARCHAR(255),
@@ -108,18 +117,63 @@ CREATE TABLE IF NOT EXISTS title_registry (
     FOREIGN KEY (collateral_id) REFERENCES collateral(collateral_id)
 );
 
+-- Create MarketStats table (monthly valuation aggregates per vehicle market bucket)
+CREATE TABLE IF NOT EXISTS market_stats (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    type VARCHAR(100) NOT NULL,
+    location VARCHAR(255) NOT NULL,
+    make VARCHAR(100) NOT NULL,
+    model VARCHAR(100) NOT NULL,
+    model_year INTEGER NOT NULL,
+    period_start DATE NOT NULL,
+    sample_count BIGINT NOT NULL,
+    value_sum DECIMAL(23,2) NOT NULL,
+    min_value DECIMAL(19,2),
+    max_value DECIMAL(19,2),
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uk_market_stats_bucket UNIQUE (type, location, make, model, model_year, period_start)
+);
+
+-- Create RevaluationCheckpoint table (resume point of the portfolio revaluation job)
+CREATE TABLE IF NOT EXISTS revaluation_checkpoint (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    job_name VARCHAR(100) NOT NULL UNIQUE,
+    last_collateral_id BIGINT NOT NULL DEFAULT 0,
+    processed_count BIGINT NOT NULL DEFAULT 0,
+    completed BOOLEAN NOT NULL DEFAULT FALSE,
+    started_at TIMESTAMP,
+    updated_at TIMESTAMP,
+    completed_at TIMESTAMP
+);
+
+-- Create ChangeEvent table (transactional outbox; id is the consumer offset)
+CREATE TABLE IF NOT EXISTS change_event (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    aggregate_type VARCHAR(50) NOT NULL,
+    aggregate_id VARCHAR(255) NOT NULL,
+    event_type VARCHAR(50) NOT NULL,
+    payload TEXT,
+    created_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_change_event_created_at ON change_event(created_at);
+
 -- Create indexes for AutoValuation table
-CREATE INDEX IF NOT EXISTS idx_auto_valuation_collateral_id ON auto_valuation(collateral_id);
-CREATE INDEX IF NOT EXISTS idx_auto_valuation_type ON auto_valuation(type);
+-- collateral_id leads DESC so H2 reads the latest valuation straight off the index instead of the FK index
+CREATE INDEX IF NOT EXISTS idx_auto_valuation_collateral_valuation_date ON auto_valuation(collateral_id DESC, valuation_date DESC);
 CREATE INDEX IF NOT EXISTS idx_auto_valuation_location ON auto_valuation(location);
+CREATE INDEX IF NOT EXISTS idx_auto_valuation_type_location_date ON auto_valuation(type, location, valuation_date DESC);
 CREATE INDEX IF NOT EXISTS idx_auto_valuation_status ON auto_valuation(status);
 CREATE INDEX IF NOT EXISTS idx_auto_valuation_valuation_date ON auto_valuation(valuation_date);
 CREATE INDEX IF NOT EXISTS idx_auto_valuation_request_date ON auto_valuation(request_date);
+CREATE INDEX IF NOT EXISTS idx_auto_valuation_vehicle_market ON auto_valuation(type, location, make, model, model_year);
+CREATE INDEX IF NOT EXISTS idx_auto_valuation_type_id ON auto_valuation(type, id);
 
 -- Create indexes for TitleRegistry table
-CREATE INDEX IF NOT EXISTS idx_title_registry_collateral_id ON title_registry(collateral_id);
+-- collateral_id leads DESC so H2 reads the latest verification straight off the index instead of the FK index
+CREATE INDEX IF NOT EXISTS idx_title_registry_collateral_verification_date ON title_registry(collateral_id DESC, verification_date DESC);
 CREATE INDEX IF NOT EXISTS idx_title_registry_title_number ON title_registry(title_number);
-CREATE INDEX IF NOT EXISTS idx_title_registry_current_owner ON title_registry(current_owner);
-CREATE INDEX IF NOT EXISTS idx_title_registry_status ON title_registry(status);
-CREATE INDEX IF NOT EXISTS idx_title_registry_is_valid ON title_registry(is_valid);
+CREATE INDEX IF NOT EXISTS idx_title_registry_owner_status ON title_registry(current_owner, status);
+CREATE INDEX IF NOT EXISTS idx_title_registry_status_valid_id ON title_registry(status, is_valid, id);
 CREATE INDEX IF NOT EXISTS idx_title_registry_verification_date ON title_registry(verification_date);
+CREATE INDEX IF NOT EXISTS idx_title_registry_legal_description ON title_registry(legal_description);
@@ -0,0 +1,197 @@
+package com.rjtmahinay.collateral.repository;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs {@code EXPLAIN} on H2 for every {@code @Query} of the collateral, encumbrance, auto valuation and title
+ * registry repositories, using the annotation text itself, and fails when a plan scans a table or sorts rows the
+ * index did not already return in order. Sorting the output of a top-level {@code GROUP BY} sorts groups, not
+ * rows, and is allowed. The named-index tests below pin the queries the composite indexes in schema.sql exist for.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class QueryIndexPlanTest {
+
+    private static final List<Class<?>> REPOSITORIES = List.of(CollateralRepository.class,
+            EncumbranceRepository.class, AutoValuationRepository.class, TitleRegistryRepository.class);
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @TestFactory
+    Stream<DynamicTest> everyQueryReadsAnIndexInOrder() {
+        return REPOSITORIES.stream()
+                .flatMap(repository -> Arrays.stream(repository.getDeclaredMethods())
+                        .filter(method -> method.isAnnotationPresent(Query.class))
+                        .sorted(Comparator.comparing(Method::getName)))
+                .map(method -> DynamicTest.dynamicTest(
+                        method.getDeclaringClass().getSimpleName() + "." + method.getName(),
+                        () -> StepVerifier.create(explain(method))
+                                .assertNext(plan -> {
+                                    assertThat(plan).as("table scan in%n%s", plan).doesNotContain("tableScan");
+                                    if (sortsRows(plan)) {
+                                        assertThat(plan).as("unindexed sort in%n%s", plan)
+                                                .endsWith("/* index sorted */");
+                                    }
+                                })
+                                .verifyComplete()));
+    }
+
+    @Test
+    void availableCollateralRangeScanUsesCustomerStatusAvailableIndex() {
+        assertPlanUses(CollateralRepository.class, "findAvailableCollateralsByCustomerIdAndMinValue",
+                "IDX_COLLATERAL_CUSTOMER_STATUS_AVAILABLE");
+    }
+
+    @Test
+    void activeSumPerCollateralUsesCollateralStatusAmountIndex() {
+        assertPlanUses(EncumbranceRepository.class, "getTotalEncumberedAmountByCollateralId",
+                "IDX_ENCUMBRANCE_COLLATERAL_STATUS_AMOUNT");
+    }
+
+    @Test
+    void expiredEncumbranceScanUsesStatusExpiryDateIndex() {
+        assertPlanUses(EncumbranceRepository.class, "findExpiredEncumbrances", "IDX_ENCUMBRANCE_STATUS_EXPIRY_DATE");
+        assertPlanUses(EncumbranceRepository.class, "findExpiredEncumbranceIds",
+                "IDX_ENCUMBRANCE_STATUS_EXPIRY_DATE");
+    }
+
+    @Test
+    void expiredEncumbranceCountUsesStatusExpiryDateIndex() {
+        assertPlanUses(EncumbranceRepository.class, "countExpiredEncumbrances", "IDX_ENCUMBRANCE_STATUS_EXPIRY_DATE");
+    }
+
+    @Test
+    void latestValuationUsesCollateralValuationDateIndex() {
+        assertPlanUses(AutoValuationRepository.class, "findLatestByCollateralId",
+                "IDX_AUTO_VALUATION_COLLATERAL_VALUATION_DATE");
+    }
+
+    @Test
+    void valuationsByTypeAndLocationUseTypeLocationDateIndex() {
+        assertPlanUses(AutoValuationRepository.class, "findByTypeAndLocationOrderByValuationDateDesc",
+                "IDX_AUTO_VALUATION_TYPE_LOCATION_DATE");
+    }
+
+    @Test
+    void valuationDateRangeUsesValuationDateIndex() {
+        assertPlanUses(AutoValuationRepository.class, "findByValuationDateBetween",
+                "IDX_AUTO_VALUATION_VALUATION_DATE");
+    }
+
+    @Test
+    void latestTitleUsesCollateralVerificationDateIndex() {
+        assertPlanUses(TitleRegistryRepository.class, "findLatestByCollateralId",
+                "IDX_TITLE_REGISTRY_COLLATERAL_VERIFICATION_DATE");
+    }
+
+    @Test
+    void titlesByOwnerUseOwnerStatusIndex() {
+        assertPlanUses(TitleRegistryRepository.class, "findVerifiedTitlesByOwner", "IDX_TITLE_REGISTRY_OWNER_STATUS");
+    }
+
+    @Test
+    void validTitlesUseStatusValidIndex() {
+        assertPlanUses(TitleRegistryRepository.class, "findAllValidTitles", "IDX_TITLE_REGISTRY_STATUS_VALID_ID");
+        assertPlanUses(TitleRegistryRepository.class, "findAllValidTitlesAfter", "IDX_TITLE_REGISTRY_STATUS_VALID_ID");
+    }
+
+    @Test
+    void titleByLegalDescriptionUsesLegalDescriptionIndex() {
+        assertPlanUses(TitleRegistryRepository.class, "findByLegalDescription",
+                "IDX_TITLE_REGISTRY_LEGAL_DESCRIPTION");
+    }
+
+    private void assertPlanUses(Class<?> repository, String methodName, String index) {
+        Method method = Arrays.stream(repository.getDeclaredMethods())
+                .filter(candidate -> candidate.getName().equals(methodName))
+                .findFirst()
+                .orElseThrow();
+
+        StepVerifier.create(explain(method))
+                .assertNext(plan -> assertThat(plan).contains(index))
+                .verifyComplete();
+    }
+
+    private Mono<String> explain(Method method) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("EXPLAIN " + method.getAnnotation(Query.class).value());
+        for (Map.Entry<String, Object> parameter : sampleParameters(method).entrySet()) {
+            spec = spec.bind(parameter.getKey(), parameter.getValue());
+        }
+        return spec.map(row -> row.get(0, String.class)).one();
+    }
+
+    /**
+     * Rows are sorted when the top-level statement has an {@code ORDER BY} and no {@code GROUP BY}; H2 prints
+     * top-level clauses unindented and subquery clauses indented.
+     */
+    private static boolean sortsRows(String plan) {
+        List<String> lines = plan.lines().toList();
+        return lines.stream().anyMatch(line -> line.startsWith("ORDER BY"))
+                && lines.stream().noneMatch(line -> line.startsWith("GROUP BY"));
+    }
+
+    private static Map<String, Object> sampleParameters(Method method) {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        for (Parameter parameter : method.getParameters()) {
+            Param param = parameter.getAnnotation(Param.class);
+            String name = param != null ? param.value() : parameter.getName();
+            parameters.put(name, sampleValue(parameter));
+        }
+        return parameters;
+    }
+
+    private static Object sampleValue(Parameter parameter) {
+        Class<?> type = parameter.getType();
+        if (Iterable.class.isAssignableFrom(type)) {
+            Class<?> element = (Class<?>) ((ParameterizedType) parameter.getParameterizedType())
+                    .getActualTypeArguments()[0];
+            return List.of(sampleValue(element, 1), sampleValue(element, 2));
+        }
+        return sampleValue(type, 1);
+    }
+
+    private static Object sampleValue(Class<?> type, int ordinal) {
+        if (type == String.class) {
+            return "SAMPLE-" + ordinal;
+        }
+        if (type == Long.class || type == long.class) {
+            return (long) ordinal;
+        }
+        if (type == Integer.class || type == int.class) {
+            return 100;
+        }
+        if (type == BigDecimal.class) {
+            return BigDecimal.valueOf(1000);
+        }
+        if (type == LocalDateTime.class) {
+            return LocalDateTime.now();
+        }
+        if (type.isEnum()) {
+            return ((Enum<?>) type.getEnumConstants()[0]).name();
+        }
+        throw new IllegalArgumentException("No sample value for " + type);
+    }
+}